@@ -0,0 +1,93 @@
+package com.ivoka.authJWT.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Two Hikari pools: writes on the primary (spring.datasource.*) and @ReplicaRead @Transactional(readOnly = true)
+ * work on app.datasource.replica.*, which falls back to the primary when no replica url is set. Both pools publish
+ * hikaricp.* metrics tagged with their pool name, including hikaricp.connections.acquire for the wait time.
+ */
+@Configuration
+public class DataSourceConfig {
+
+    @Value("${app.datasource.replica.url:}")
+    private String replicaUrl;
+
+    @Value("${app.datasource.replica.username:}")
+    private String replicaUsername;
+
+    @Value("${app.datasource.replica.password:}")
+    private String replicaPassword;
+
+    @Value("${app.virtualThreadsEnabled:false}")
+    private boolean virtualThreadsEnabled;
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+
+    // Pool settings only; the pools themselves are not beans so that the DataSource initializer sees a single one
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariConfig writePoolConfig() {
+        return new HikariConfig();
+    }
+
+    @Bean
+    @ConfigurationProperties("app.datasource.replica.hikari")
+    public HikariConfig readPoolConfig() {
+        return new HikariConfig();
+    }
+
+    @Bean
+    public DataSource dataSource(DataSourceProperties properties, ObjectProvider<MeterRegistry> meterRegistry) {
+        HikariConfig writeConfig = writePoolConfig();
+        writeConfig.setJdbcUrl(properties.determineUrl());
+        writeConfig.setUsername(properties.determineUsername());
+        writeConfig.setPassword(properties.determinePassword());
+
+        HikariConfig readConfig = readPoolConfig();
+        readConfig.setJdbcUrl(StringUtils.hasText(replicaUrl) ? replicaUrl : properties.determineUrl());
+        readConfig.setUsername(StringUtils.hasText(replicaUsername) ? replicaUsername : properties.determineUsername());
+        readConfig.setPassword(StringUtils.hasText(replicaUsername) ? replicaPassword : properties.determinePassword());
+
+        return new LazyConnectionDataSourceProxy(new ReadWriteRoutingDataSource(
+                pool("write", writeConfig, properties, meterRegistry.getIfAvailable()),
+                pool("read", readConfig, properties, meterRegistry.getIfAvailable())));
+    }
+
+    private DataSource pool(String name, HikariConfig config, DataSourceProperties properties, MeterRegistry meterRegistry) {
+        HikariDataSource dataSource = new HikariDataSource();
+        config.copyStateTo(dataSource);
+        dataSource.setPoolName(name);
+        dataSource.setDriverClassName(properties.determineDriverClassName());
+        if (meterRegistry != null) {
+            dataSource.setMetricRegistry(meterRegistry);
+        }
+        pools.add(dataSource);
+
+        // Virtual threads wait for a permit instead of pinning their carrier inside the pool, see VirtualThreadConfig
+        if (virtualThreadsEnabled) {
+            return new ConcurrencyLimitedDataSource(dataSource, dataSource.getMaximumPoolSize(), dataSource.getConnectionTimeout());
+        }
+        return dataSource;
+    }
+
+    @PreDestroy
+    public void closePools() {
+        pools.forEach(HikariDataSource::close);
+    }
+}
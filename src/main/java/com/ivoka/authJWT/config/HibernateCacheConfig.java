@@ -0,0 +1,27 @@
+package com.ivoka.authJWT.config;
+
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+@Configuration
+public class HibernateCacheConfig {
+
+    // Hibernate 5.3 hands the uri straight to the caching provider, which does not understand classpath: locations.
+    // Static so that building the EntityManagerFactory does not need this class first
+    @Bean
+    public static HibernatePropertiesCustomizer jcacheConfigCustomizer() {
+        return hibernateProperties -> {
+            try {
+                hibernateProperties.put("hibernate.javax.cache.uri",
+                        new ClassPathResource("ehcache.xml").getURL().toString());
+            } catch (IOException ex) {
+                throw new UncheckedIOException("ehcache.xml not found on the classpath", ex);
+            }
+        };
+    }
+}
@@ -0,0 +1,41 @@
+package com.ivoka.authJWT.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+@ConditionalOnProperty(name = "app.reactiveReadsEnabled", havingValue = "true")
+public class ReactiveReadConfig {
+
+    // Sized like the connection pool: more threads would only queue up inside Hikari
+    @Value("${app.reactiveReadThreads:10}")
+    private int threads;
+
+    @Value("${app.reactiveReadQueueCapacity:1000}")
+    private int queueCapacity;
+
+    @Bean(destroyMethod = "dispose")
+    public Scheduler readScheduler() {
+        AtomicInteger threadCount = new AtomicInteger();
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "blocking-read-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        return Schedulers.fromExecutorService(executor);
+    }
+}
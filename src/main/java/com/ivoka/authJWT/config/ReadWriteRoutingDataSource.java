@@ -0,0 +1,51 @@
+package com.ivoka.authJWT.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sends connections for read-only transactions started inside a @ReplicaRead method to the read pool and
+ * everything else to the write pool. The flag is only set once the transaction has begun, so this must sit behind
+ * a LazyConnectionDataSourceProxy.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+    private static final String WRITE = "write";
+    private static final String READ = "read";
+
+    // Set by ReplicaReadAspect while a @ReplicaRead method runs
+    private static final ThreadLocal<Boolean> replicaReads = new ThreadLocal<>();
+
+    public ReadWriteRoutingDataSource(DataSource writeDataSource, DataSource readDataSource) {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(WRITE, writeDataSource);
+        targets.put(READ, readDataSource);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(writeDataSource);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return isReplicaTransaction() ? READ : WRITE;
+    }
+
+    // True if the current transaction reads from the replica, or will once it needs a connection
+    public static boolean isReplicaTransaction() {
+        return replicaReads.get() != null && TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    // Returns the previous setting, to be restored when the marked method returns
+    static boolean allowReplicaReads(boolean allowed) {
+        boolean previous = replicaReads.get() != null;
+        if (allowed) {
+            replicaReads.set(Boolean.TRUE);
+        } else {
+            replicaReads.remove();
+        }
+        return previous;
+    }
+}
@@ -0,0 +1,14 @@
+package com.ivoka.authJWT.config;
+
+import java.lang.annotation.*;
+
+/**
+ * Lets a @Transactional(readOnly = true) method read from the replica. Unmarked read-only transactions, such as
+ * the repositories' own, stay on the primary so they see the caller's latest writes.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ReplicaRead {
+
+}
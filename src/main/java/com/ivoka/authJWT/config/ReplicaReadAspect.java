@@ -0,0 +1,21 @@
+package com.ivoka.authJWT.config;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+@Aspect
+@Component
+public class ReplicaReadAspect {
+
+    @Around("@annotation(com.ivoka.authJWT.config.ReplicaRead)")
+    public Object allowReplicaReads(ProceedingJoinPoint joinPoint) throws Throwable {
+        boolean previous = ReadWriteRoutingDataSource.allowReplicaReads(true);
+        try {
+            return joinPoint.proceed();
+        } finally {
+            ReadWriteRoutingDataSource.allowReplicaReads(previous);
+        }
+    }
+}
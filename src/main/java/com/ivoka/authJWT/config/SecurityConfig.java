@@ -1,9 +1,12 @@
 package com.ivoka.authJWT.config;
 
+import com.ivoka.authJWT.security.BCryptCostCalibrator;
+import com.ivoka.authJWT.security.CostAwareBCryptPasswordEncoder;
 import com.ivoka.authJWT.security.CustomUserDetailsService;
 import com.ivoka.authJWT.security.JwtAuthenticationEntryPoint;
 import com.ivoka.authJWT.security.JwtAuthenticationFilter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -15,10 +18,13 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
+import java.util.HashMap;
+import java.util.Map;
+
 @Configuration
 @EnableWebSecurity
 @EnableGlobalMethodSecurity(
@@ -33,6 +39,15 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
     @Autowired
     private JwtAuthenticationEntryPoint unauthorizedHandler;
 
+    private static final String BCRYPT_PREFIX = "{bcrypt}";
+
+    // BCrypt cost; only raised on startup when calibration is enabled with app.bcryptTargetHashMs
+    @Value("${app.bcryptStrength:10}")
+    private int bcryptStrength;
+
+    @Value("${app.bcryptTargetHashMs:0}")
+    private long bcryptTargetHashMs;
+
     @Bean
     public JwtAuthenticationFilter jwtAuthenticationFilter() {
         return new JwtAuthenticationFilter();
@@ -53,7 +68,27 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
 
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        int strength = bcryptTargetHashMs > 0
+                ? BCryptCostCalibrator.calibrate(bcryptStrength, bcryptTargetHashMs)
+                : bcryptStrength;
+
+        CostAwareBCryptPasswordEncoder bcrypt = new CostAwareBCryptPasswordEncoder(strength);
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put("bcrypt", bcrypt);
+
+        DelegatingPasswordEncoder passwordEncoder = new DelegatingPasswordEncoder("bcrypt", encoders) {
+            // Spring Security 5.1 only compares the {id} prefix, so ask the BCrypt encoder about the cost as well
+            @Override
+            public boolean upgradeEncoding(String encodedPassword) {
+                if (encodedPassword != null && encodedPassword.startsWith(BCRYPT_PREFIX)) {
+                    return bcrypt.upgradeEncoding(encodedPassword.substring(BCRYPT_PREFIX.length()));
+                }
+                return super.upgradeEncoding(encodedPassword);
+            }
+        };
+        // Hashes stored before the {id} prefix was introduced are plain BCrypt
+        passwordEncoder.setDefaultPasswordEncoderForMatches(encoders.get("bcrypt"));
+        return passwordEncoder;
     }
 
     @Override
@@ -84,7 +119,7 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
                 .permitAll()
                 .antMatchers("/api/user/checkUsernameAvailability", "/api/user/checkEmailAvailability")
                 .permitAll()
-                .antMatchers(HttpMethod.GET, "/api/projects/**", "/api/users/**")
+                .antMatchers(HttpMethod.GET, "/api/projects/**", "/api/users/**", "/api/rx/projects/**", "/api/rx/users/**")
                 .permitAll()
                 .anyRequest()
                 .authenticated();
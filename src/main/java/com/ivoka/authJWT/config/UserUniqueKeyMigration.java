@@ -0,0 +1,85 @@
+package com.ivoka.authJWT.config;
+
+import com.ivoka.authJWT.model.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+
+/**
+ * Gives the users unique keys the names signup reads from a violation, see User.USERNAME_CONSTRAINT. Schemas created
+ * before the keys were named carry Hibernate-generated UK_... keys on username and email. Each is renamed to the
+ * expected name, or dropped when a key of that name exists already (ddl-auto = update adds it next to the old one).
+ * Runs once the schema is in place and before requests are served; current schemas are left alone.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class UserUniqueKeyMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserUniqueKeyMigration.class);
+
+    // Works on MySQL and H2, whose SCHEMA() is the current database and schema respectively
+    private static final String FIND_UNIQUE_KEYS = "SELECT tc.CONSTRAINT_NAME, kcu.COLUMN_NAME " +
+            "FROM INFORMATION_SCHEMA.TABLE_CONSTRAINTS tc JOIN INFORMATION_SCHEMA.KEY_COLUMN_USAGE kcu " +
+            "ON kcu.CONSTRAINT_SCHEMA = tc.CONSTRAINT_SCHEMA AND kcu.CONSTRAINT_NAME = tc.CONSTRAINT_NAME " +
+            "AND kcu.TABLE_NAME = tc.TABLE_NAME " +
+            "WHERE tc.TABLE_SCHEMA = SCHEMA() AND LOWER(tc.TABLE_NAME) = 'users' AND tc.CONSTRAINT_TYPE = 'UNIQUE'";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void migrate() {
+        String database = jdbcTemplate.execute((ConnectionCallback<String>) con -> con.getMetaData().getDatabaseProductName());
+        if (!"MySQL".equals(database) && !"H2".equals(database)) {
+            logger.warn("Not checking the users unique key names on {}", database);
+            return;
+        }
+
+        Map<String, List<String>> columnsByKey = new TreeMap<>();
+        jdbcTemplate.query(FIND_UNIQUE_KEYS, rs -> {
+            columnsByKey.computeIfAbsent(rs.getString(1), key -> new ArrayList<>())
+                    .add(rs.getString(2).toLowerCase(Locale.ROOT));
+        });
+
+        Set<String> keyNames = new HashSet<>();
+        columnsByKey.keySet().forEach(key -> keyNames.add(key.toLowerCase(Locale.ROOT)));
+
+        columnsByKey.forEach((key, columns) -> {
+            String expected = expectedName(columns);
+            if (expected == null || expected.equalsIgnoreCase(key)) {
+                return;
+            }
+
+            if (keyNames.contains(expected)) {
+                logger.info("Dropping unique key {} on users, {} covers {}", key, expected, columns.get(0));
+                jdbcTemplate.execute("MySQL".equals(database)
+                        ? "ALTER TABLE users DROP INDEX `" + key + "`"
+                        : "ALTER TABLE users DROP CONSTRAINT \"" + key + "\"");
+            } else {
+                logger.info("Renaming unique key {} on users to {}", key, expected);
+                jdbcTemplate.execute("MySQL".equals(database)
+                        ? "ALTER TABLE users RENAME INDEX `" + key + "` TO " + expected
+                        : "ALTER TABLE users RENAME CONSTRAINT \"" + key + "\" TO " + expected);
+                keyNames.add(expected);
+            }
+        });
+    }
+
+    // Only keys on the username or the email alone are signup's to name
+    private static String expectedName(List<String> columns) {
+        if (columns.equals(Collections.singletonList("username"))) {
+            return User.USERNAME_CONSTRAINT;
+        }
+        if (columns.equals(Collections.singletonList("email"))) {
+            return User.EMAIL_CONSTRAINT;
+        }
+        return null;
+    }
+}
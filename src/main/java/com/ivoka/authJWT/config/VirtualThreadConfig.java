@@ -0,0 +1,53 @@
+package com.ivoka.authJWT.config;
+
+import org.apache.coyote.AbstractProtocol;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * With app.virtualThreadsEnabled every HTTP request runs on its own virtual thread, so requests blocked on
+ * MySQL no longer exhaust a fixed Tomcat worker pool. Database concurrency is then bounded by
+ * ConcurrencyLimitedDataSource at the size of each connection pool, see DataSourceConfig. Needs a Java 21+
+ * runtime; the build still targets Java 8, so the executor is looked up reflectively and older runtimes keep
+ * the platform thread pool.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.virtualThreadsEnabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+    @Bean
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> virtualThreadExecutorCustomizer() {
+        return factory -> {
+            ExecutorService executor = newVirtualThreadPerTaskExecutor();
+            if (executor == null) {
+                logger.warn("Virtual threads need Java 21 or later, running on {}; keeping Tomcat's platform thread pool",
+                        System.getProperty("java.version"));
+                return;
+            }
+
+            factory.addConnectorCustomizers(connector -> {
+                if (connector.getProtocolHandler() instanceof AbstractProtocol) {
+                    ((AbstractProtocol<?>) connector.getProtocolHandler()).setExecutor(executor);
+                }
+            });
+        };
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return null;
+        }
+    }
+}
@@ -1,24 +1,23 @@
 package com.ivoka.authJWT.controller;
 
-import com.ivoka.authJWT.exception.AppException;
-import com.ivoka.authJWT.model.Role;
-import com.ivoka.authJWT.model.RoleName;
+import com.ivoka.authJWT.exception.BadRequestException;
 import com.ivoka.authJWT.model.User;
 import com.ivoka.authJWT.payload.ApiResponse;
 import com.ivoka.authJWT.payload.JwtAuthenticationResponse;
 import com.ivoka.authJWT.payload.LoginRequest;
 import com.ivoka.authJWT.payload.SignUpRequest;
-import com.ivoka.authJWT.repository.RoleRepository;
-import com.ivoka.authJWT.repository.UserRepository;
+import com.ivoka.authJWT.security.CustomUserDetailsService;
 import com.ivoka.authJWT.security.JwtTokenProvider;
+import com.ivoka.authJWT.security.UserPrincipal;
+import com.ivoka.authJWT.service.PasswordHashingService;
+import com.ivoka.authJWT.service.UserIdentityFilter;
+import com.ivoka.authJWT.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -27,7 +26,7 @@ import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import javax.validation.Valid;
 import java.net.URI;
-import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/auth")
@@ -37,62 +36,74 @@ public class AuthController {
     AuthenticationManager authenticationManager;
 
     @Autowired
-    UserRepository userRepository;
+    UserService userService;
 
     @Autowired
-    RoleRepository roleRepository;
-
-    @Autowired
-    PasswordEncoder passwordEncoder;
+    PasswordHashingService passwordHashingService;
 
     @Autowired
     JwtTokenProvider tokenProvider;
 
-    @PostMapping("/signin")
-    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
-
-        Authentication authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(
-                        loginRequest.getUsernameOrEmail(),
-                        loginRequest.getPassword()
-                )
-        );
+    @Autowired
+    CustomUserDetailsService customUserDetailsService;
 
-        SecurityContextHolder.getContext().setAuthentication(authentication);
+    @Autowired
+    UserIdentityFilter userIdentityFilter;
 
-        String jwt = tokenProvider.generateToken(authentication);
-        return ResponseEntity.ok(new JwtAuthenticationResponse(jwt));
+    @PostMapping("/signin")
+    public CompletableFuture<ResponseEntity<?>> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
+
+        // Password verification runs on the hashing pool; the request thread is released until it completes
+        return passwordHashingService.submit(() -> {
+            Authentication authentication = authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken(
+                            loginRequest.getUsernameOrEmail(),
+                            loginRequest.getPassword()
+                    )
+            );
+
+            // Rehash in the background if the stored hash uses an outdated format or cost
+            passwordHashingService.upgradeIfNeeded((UserPrincipal) authentication.getPrincipal(),
+                    loginRequest.getPassword());
+
+            String jwt = tokenProvider.generateToken(authentication);
+            return ResponseEntity.ok(new JwtAuthenticationResponse(jwt));
+        });
     }
 
     @PostMapping("/signup")
-    public ResponseEntity<?> registerUser(@Valid @RequestBody SignUpRequest signUpRequest) {
-        if(userRepository.existsByUsername(signUpRequest.getUsername())) {
-            return new ResponseEntity(new ApiResponse(false, "Username is already taken!"),
-                    HttpStatus.BAD_REQUEST);
+    public CompletableFuture<ResponseEntity<?>> registerUser(@Valid @RequestBody SignUpRequest signUpRequest) {
+        // Known names are turned away before hashing; new ones cost no query here, see UserIdentityFilter
+        if(userIdentityFilter.isUsernameTaken(signUpRequest.getUsername())) {
+            return CompletableFuture.completedFuture(new ResponseEntity(new ApiResponse(false, UserService.USERNAME_TAKEN),
+                    HttpStatus.BAD_REQUEST));
         }
 
-        if(userRepository.existsByEmail(signUpRequest.getEmail())) {
-            return new ResponseEntity(new ApiResponse(false, "Email Address already in use!"),
-                    HttpStatus.BAD_REQUEST);
+        if(userIdentityFilter.isEmailTaken(signUpRequest.getEmail())) {
+            return CompletableFuture.completedFuture(new ResponseEntity(new ApiResponse(false, UserService.EMAIL_TAKEN),
+                    HttpStatus.BAD_REQUEST));
         }
 
-        // Creating user's account
-        User user = new User(signUpRequest.getName(), signUpRequest.getUsername(),
-                signUpRequest.getEmail(), signUpRequest.getPassword());
-
-        user.setPassword(passwordEncoder.encode(user.getPassword()));
-
-        Role userRole = roleRepository.findByName(RoleName.ROLE_USER)
-                .orElseThrow(() -> new AppException("User Role not set."));
-
-        user.setRoles(Collections.singleton(userRole));
-
-        User result = userRepository.save(user);
-
+        // Built on the request thread, the current request is not visible from the hashing pool
         URI location = ServletUriComponentsBuilder
                 .fromCurrentContextPath().path("/api/users/{username}")
-                .buildAndExpand(result.getUsername()).toUri();
-
-        return ResponseEntity.created(location).body(new ApiResponse(true, "User registered successfully"));
+                .buildAndExpand(signUpRequest.getUsername()).toUri();
+
+        // The insert runs on the storage pool so a slow database never holds a hashing thread
+        return passwordHashingService.thenStore(passwordHashingService.encode(signUpRequest.getPassword()), encodedPassword -> {
+            // Creating user's account; a concurrent signup with the same username or email is caught by the insert
+            User result;
+            try {
+                result = userService.registerUser(new User(signUpRequest.getName(), signUpRequest.getUsername(),
+                        signUpRequest.getEmail(), encodedPassword));
+            } catch (BadRequestException ex) {
+                return new ResponseEntity(new ApiResponse(false, ex.getMessage()), HttpStatus.BAD_REQUEST);
+            }
+
+            customUserDetailsService.evictUser(result);
+            userIdentityFilter.recordUser(result.getUsername(), result.getEmail());
+
+            return ResponseEntity.created(location).body(new ApiResponse(true, "User registered successfully"));
+        });
     }
-}
\ No newline at end of file
+}
@@ -9,13 +9,17 @@ import com.ivoka.authJWT.security.CurrentUser;
 import com.ivoka.authJWT.security.UserPrincipal;
 import com.ivoka.authJWT.service.ProjectService;
 import com.ivoka.authJWT.util.AppConstants;
+import com.ivoka.authJWT.util.PageCursor;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import javax.validation.Valid;
@@ -41,10 +45,26 @@ public class ProjectController {
     @GetMapping
     public PagedResponse<ProjectResponse> getProjects(@CurrentUser UserPrincipal currentUser,
                                                    @RequestParam(value = "page", defaultValue = AppConstants.DEFAULT_PAGE_NUMBER) int page,
-                                                   @RequestParam(value = "size", defaultValue = AppConstants.DEFAULT_PAGE_SIZE) int size) {
+                                                   @RequestParam(value = "size", defaultValue = AppConstants.DEFAULT_PAGE_SIZE) int size,
+                                                   WebRequest webRequest) {
+        if (webRequest.checkNotModified(projectService.getListingEtag(currentUser, webRequest))) {
+            return null;
+        }
         return projectService.getAllProjects(currentUser, page, size);
     }
 
+    // Keyset-paginated variant; pass an empty cursor for the first page and then the returned nextCursor
+    @GetMapping(params = "cursor")
+    public PagedResponse<ProjectResponse> getProjectsByCursor(@CurrentUser UserPrincipal currentUser,
+                                                           @RequestParam(value = "cursor") String cursor,
+                                                           @RequestParam(value = "size", defaultValue = AppConstants.DEFAULT_PAGE_SIZE) int size,
+                                                           WebRequest webRequest) {
+        if (webRequest.checkNotModified(projectService.getListingEtag(currentUser, webRequest))) {
+            return null;
+        }
+        return projectService.getAllProjects(currentUser, PageCursor.decode(cursor), size);
+    }
+
     @PostMapping
     @PreAuthorize("hasRole('USER')")
     public ResponseEntity<?> createProject(@Valid @RequestBody ProjectRequest projectRequest) {
@@ -60,10 +80,21 @@ public class ProjectController {
 
     @GetMapping("/{projectId}")
     public ProjectResponse getProjectById(@CurrentUser UserPrincipal currentUser,
-                                    @PathVariable Long projectId) {
+                                    @PathVariable Long projectId,
+                                    WebRequest webRequest) {
+        // Answers 304 without rendering when the client's copy is still current
+        if (webRequest.checkNotModified(projectService.getProjectEtag(projectId, currentUser))) {
+            return null;
+        }
         return projectService.getProjectById(projectId, currentUser);
     }
 
+    // Live vote counts as Server-Sent Events: a "counts" event on connect, then "delta" events with changed tasks
+    @GetMapping(value = "/{projectId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamVoteCounts(@PathVariable Long projectId) {
+        return projectService.streamVoteCounts(projectId);
+    }
+
     @PostMapping("/{projectId}/votes")
     @PreAuthorize("hasRole('USER')")
     public ProjectResponse castVote(@CurrentUser UserPrincipal currentUser,
@@ -0,0 +1,64 @@
+package com.ivoka.authJWT.controller;
+
+import com.ivoka.authJWT.exception.ServiceUnavailableException;
+import com.ivoka.authJWT.payload.PagedResponse;
+import com.ivoka.authJWT.payload.ProjectResponse;
+import com.ivoka.authJWT.payload.UserProfile;
+import com.ivoka.authJWT.security.CurrentUser;
+import com.ivoka.authJWT.security.UserPrincipal;
+import com.ivoka.authJWT.service.ProjectService;
+import com.ivoka.authJWT.service.UserService;
+import com.ivoka.authJWT.util.AppConstants;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking variants of the hot read endpoints, enabled with app.reactiveReadsEnabled. The Tomcat thread is
+ * released as soon as the request is parsed; the blocking ProjectService/UserService call runs on the bounded
+ * readScheduler and the response is written when its Mono completes. A full scheduler queue answers 503.
+ */
+@RestController
+@RequestMapping("/api/rx")
+@ConditionalOnProperty(name = "app.reactiveReadsEnabled", havingValue = "true")
+public class ReactiveReadController {
+
+    @Autowired
+    private ProjectService projectService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private Scheduler readScheduler;
+
+    @GetMapping("/projects")
+    public Mono<PagedResponse<ProjectResponse>> getProjects(@CurrentUser UserPrincipal currentUser,
+                                                            @RequestParam(value = "page", defaultValue = AppConstants.DEFAULT_PAGE_NUMBER) int page,
+                                                            @RequestParam(value = "size", defaultValue = AppConstants.DEFAULT_PAGE_SIZE) int size) {
+        return read(() -> projectService.getAllProjects(currentUser, page, size));
+    }
+
+    @GetMapping("/projects/{projectId}")
+    public Mono<ProjectResponse> getProjectById(@CurrentUser UserPrincipal currentUser,
+                                                @PathVariable Long projectId) {
+        return read(() -> projectService.getProjectById(projectId, currentUser));
+    }
+
+    @GetMapping("/users/{username}")
+    public Mono<UserProfile> getUserProfile(@PathVariable(value = "username") String username) {
+        return read(() -> userService.getUserProfile(username));
+    }
+
+    private <T> Mono<T> read(Supplier<T> supplier) {
+        return Mono.fromSupplier(supplier)
+                .subscribeOn(readScheduler)
+                .onErrorMap(RejectedExecutionException.class,
+                        ex -> new ServiceUnavailableException("Server is busy, please try again shortly", ex));
+    }
+}
@@ -1,36 +1,49 @@
 package com.ivoka.authJWT.controller;
 
-import com.ivoka.authJWT.exception.ResourceNotFoundException;
-import com.ivoka.authJWT.model.User;
 import com.ivoka.authJWT.payload.*;
-import com.ivoka.authJWT.repository.ProjectRepository;
-import com.ivoka.authJWT.repository.UserRepository;
-import com.ivoka.authJWT.repository.VoteRepository;
 import com.ivoka.authJWT.security.CurrentUser;
 import com.ivoka.authJWT.security.UserPrincipal;
 import com.ivoka.authJWT.service.ProjectService;
+import com.ivoka.authJWT.service.RateLimiter;
+import com.ivoka.authJWT.service.UserIdentityFilter;
+import com.ivoka.authJWT.service.UserService;
+import com.ivoka.authJWT.service.UserStatsService;
 import com.ivoka.authJWT.util.AppConstants;
+import com.ivoka.authJWT.util.PageCursor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import javax.servlet.http.HttpServletRequest;
 
 @RestController
 @RequestMapping("/api")
 public class UserController {
 
     @Autowired
-    private UserRepository userRepository;
+    private ProjectService projectService;
 
     @Autowired
-    private ProjectRepository projectRepository;
+    private UserService userService;
 
     @Autowired
-    private VoteRepository voteRepository;
+    private UserStatsService userStatsService;
 
     @Autowired
-    private ProjectService projectService;
+    private UserIdentityFilter userIdentityFilter;
+
+    @Autowired
+    private RateLimiter rateLimiter;
+
+    @Value("${app.availabilityChecksPerSecond:5}")
+    private double availabilityChecksPerSecond;
+
+    @Value("${app.availabilityCheckBurst:20}")
+    private int availabilityCheckBurst;
 
     private static final Logger logger = LoggerFactory.getLogger(UserController.class);
 
@@ -41,45 +54,82 @@ public class UserController {
         return userSummary;
     }
 
+    // Unauthenticated and called on every keystroke of the signup form, hence the rate limit and the filter
     @GetMapping("/user/checkUsernameAvailability")
-    public UserIdentityAvailability checkUsernameAvailability(@RequestParam(value = "username") String username) {
-        Boolean isAvailable = !userRepository.existsByUsername(username);
+    public UserIdentityAvailability checkUsernameAvailability(@RequestParam(value = "username") String username,
+                                                              HttpServletRequest request) {
+        rateLimiter.acquire("checkUsernameAvailability", request.getRemoteAddr(), availabilityChecksPerSecond, availabilityCheckBurst);
+        Boolean isAvailable = !userIdentityFilter.isUsernameTaken(username);
         return new UserIdentityAvailability(isAvailable);
     }
 
     @GetMapping("/user/checkEmailAvailability")
-    public UserIdentityAvailability checkEmailAvailability(@RequestParam(value = "email") String email) {
-        Boolean isAvailable = !userRepository.existsByEmail(email);
+    public UserIdentityAvailability checkEmailAvailability(@RequestParam(value = "email") String email,
+                                                           HttpServletRequest request) {
+        rateLimiter.acquire("checkEmailAvailability", request.getRemoteAddr(), availabilityChecksPerSecond, availabilityCheckBurst);
+        Boolean isAvailable = !userIdentityFilter.isEmailTaken(email);
         return new UserIdentityAvailability(isAvailable);
     }
 
+    // Backfills the profile statistics from the projects and votes tables
+    @PostMapping("/users/stats/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse rebuildUserStats() {
+        int rows = userStatsService.rebuild();
+        return new ApiResponse(true, "User statistics rebuilt, " + rows + " rows written");
+    }
+
     @GetMapping("/users/{username}")
     public UserProfile getUserProfile(@PathVariable(value = "username") String username) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new ResourceNotFoundException("User", "username", username));
-
-        long projectCount = projectRepository.countByCreatedBy(user.getId());
-        long voteCount = voteRepository.countByUserId(user.getId());
-
-        UserProfile userProfile = new UserProfile(user.getId(), user.getUsername(), user.getName(), user.getCreatedAt(), projectCount, voteCount);
-
-        return userProfile;
+        return userService.getUserProfile(username);
     }
 
     @GetMapping("/users/{username}/projects")
     public PagedResponse<ProjectResponse> getProjectsCreatedBy(@PathVariable(value = "username") String username,
                                                             @CurrentUser UserPrincipal currentUser,
                                                             @RequestParam(value = "page", defaultValue = AppConstants.DEFAULT_PAGE_NUMBER) int page,
-                                                            @RequestParam(value = "size", defaultValue = AppConstants.DEFAULT_PAGE_SIZE) int size) {
+                                                            @RequestParam(value = "size", defaultValue = AppConstants.DEFAULT_PAGE_SIZE) int size,
+                                                            WebRequest webRequest) {
+        if (webRequest.checkNotModified(projectService.getListingEtag(currentUser, webRequest))) {
+            return null;
+        }
         return projectService.getProjectsCreatedBy(username, currentUser, page, size);
     }
 
+    @GetMapping(value = "/users/{username}/projects", params = "cursor")
+    public PagedResponse<ProjectResponse> getProjectsCreatedByCursor(@PathVariable(value = "username") String username,
+                                                                  @CurrentUser UserPrincipal currentUser,
+                                                                  @RequestParam(value = "cursor") String cursor,
+                                                                  @RequestParam(value = "size", defaultValue = AppConstants.DEFAULT_PAGE_SIZE) int size,
+                                                                  WebRequest webRequest) {
+        if (webRequest.checkNotModified(projectService.getListingEtag(currentUser, webRequest))) {
+            return null;
+        }
+        return projectService.getProjectsCreatedBy(username, currentUser, PageCursor.decode(cursor), size);
+    }
+
     @GetMapping("/users/{username}/votes")
     public PagedResponse<ProjectResponse> getProjectsVotedBy(@PathVariable(value = "username") String username,
                                                        @CurrentUser UserPrincipal currentUser,
                                                        @RequestParam(value = "page", defaultValue = AppConstants.DEFAULT_PAGE_NUMBER) int page,
-                                                       @RequestParam(value = "size", defaultValue = AppConstants.DEFAULT_PAGE_SIZE) int size) {
+                                                       @RequestParam(value = "size", defaultValue = AppConstants.DEFAULT_PAGE_SIZE) int size,
+                                                       WebRequest webRequest) {
+        if (webRequest.checkNotModified(projectService.getListingEtag(currentUser, webRequest))) {
+            return null;
+        }
         return projectService.getProjectsVotedBy(username, currentUser, page, size);
     }
 
+    @GetMapping(value = "/users/{username}/votes", params = "cursor")
+    public PagedResponse<ProjectResponse> getProjectsVotedByCursor(@PathVariable(value = "username") String username,
+                                                                @CurrentUser UserPrincipal currentUser,
+                                                                @RequestParam(value = "cursor") String cursor,
+                                                                @RequestParam(value = "size", defaultValue = AppConstants.DEFAULT_PAGE_SIZE) int size,
+                                                                WebRequest webRequest) {
+        if (webRequest.checkNotModified(projectService.getListingEtag(currentUser, webRequest))) {
+            return null;
+        }
+        return projectService.getProjectsVotedBy(username, currentUser, PageCursor.decode(cursor), size);
+    }
+
 }
@@ -2,8 +2,7 @@ package com.ivoka.authJWT.model;
 
 import com.ivoka.authJWT.model.audit.UserDateAudit;
 import org.hibernate.annotations.BatchSize;
-import org.hibernate.annotations.Fetch;
-import org.hibernate.annotations.FetchMode;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotBlank;
@@ -13,8 +12,14 @@ import java.awt.*;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+// Listings read ProjectSummary and the detail view and votes read ProjectTaskRow projections; the entity is only written
 @Entity
-@Table(name = "projects")
+@Cacheable
+@org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
+@Table(name = "projects", indexes = {
+        @Index(name = "idx_projects_created_at_id", columnList = "createdAt, id"),
+        @Index(name = "idx_projects_created_by_created_at_id", columnList = "createdBy, createdAt, id")
+})
 public class Project extends UserDateAudit {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -27,12 +32,12 @@ public class Project extends UserDateAudit {
     @OneToMany(
             mappedBy = "project",
             cascade = CascadeType.ALL,
-            fetch = FetchType.EAGER,
+            fetch = FetchType.LAZY,
             orphanRemoval = true
     )
     @Size(min = 2, max = 6)
-    @Fetch(FetchMode.SELECT)
     @BatchSize(size = 30)
+    @org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
     private List<Task> tasks = new ArrayList<>();
 
     @NotNull
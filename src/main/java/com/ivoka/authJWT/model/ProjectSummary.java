@@ -0,0 +1,80 @@
+package com.ivoka.authJWT.model;
+
+import java.time.Instant;
+
+public class ProjectSummary {
+    private Long id;
+    private String projectName;
+    private Instant createdAt;
+    private Instant expirationDateTime;
+    private Long creatorId;
+    private String creatorUsername;
+    private String creatorName;
+
+    public ProjectSummary(Long id, String projectName, Instant createdAt, Instant expirationDateTime,
+                          Long creatorId, String creatorUsername, String creatorName) {
+        this.id = id;
+        this.projectName = projectName;
+        this.createdAt = createdAt;
+        this.expirationDateTime = expirationDateTime;
+        this.creatorId = creatorId;
+        this.creatorUsername = creatorUsername;
+        this.creatorName = creatorName;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getProjectName() {
+        return projectName;
+    }
+
+    public void setProjectName(String projectName) {
+        this.projectName = projectName;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Instant getExpirationDateTime() {
+        return expirationDateTime;
+    }
+
+    public void setExpirationDateTime(Instant expirationDateTime) {
+        this.expirationDateTime = expirationDateTime;
+    }
+
+    public Long getCreatorId() {
+        return creatorId;
+    }
+
+    public void setCreatorId(Long creatorId) {
+        this.creatorId = creatorId;
+    }
+
+    public String getCreatorUsername() {
+        return creatorUsername;
+    }
+
+    public void setCreatorUsername(String creatorUsername) {
+        this.creatorUsername = creatorUsername;
+    }
+
+    public String getCreatorName() {
+        return creatorName;
+    }
+
+    public void setCreatorName(String creatorName) {
+        this.creatorName = creatorName;
+    }
+}
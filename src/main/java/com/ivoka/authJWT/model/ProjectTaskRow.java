@@ -0,0 +1,80 @@
+package com.ivoka.authJWT.model;
+
+import java.time.Instant;
+
+// One row per task of a project, carrying the project columns needed to vote and answer with the updated project
+public class ProjectTaskRow {
+    private Long projectId;
+    private String projectName;
+    private Instant createdAt;
+    private Instant expirationDateTime;
+    private Long createdBy;
+    private Long taskId;
+    private String taskText;
+
+    public ProjectTaskRow(Long projectId, String projectName, Instant createdAt, Instant expirationDateTime, Long createdBy, Long taskId, String taskText) {
+        this.projectId = projectId;
+        this.projectName = projectName;
+        this.createdAt = createdAt;
+        this.expirationDateTime = expirationDateTime;
+        this.createdBy = createdBy;
+        this.taskId = taskId;
+        this.taskText = taskText;
+    }
+
+    public Long getProjectId() {
+        return projectId;
+    }
+
+    public void setProjectId(Long projectId) {
+        this.projectId = projectId;
+    }
+
+    public String getProjectName() {
+        return projectName;
+    }
+
+    public void setProjectName(String projectName) {
+        this.projectName = projectName;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Instant getExpirationDateTime() {
+        return expirationDateTime;
+    }
+
+    public void setExpirationDateTime(Instant expirationDateTime) {
+        this.expirationDateTime = expirationDateTime;
+    }
+
+    public Long getCreatedBy() {
+        return createdBy;
+    }
+
+    public void setCreatedBy(Long createdBy) {
+        this.createdBy = createdBy;
+    }
+
+    public Long getTaskId() {
+        return taskId;
+    }
+
+    public void setTaskId(Long taskId) {
+        this.taskId = taskId;
+    }
+
+    public String getTaskText() {
+        return taskText;
+    }
+
+    public void setTaskText(String taskText) {
+        this.taskText = taskText;
+    }
+}
@@ -0,0 +1,26 @@
+package com.ivoka.authJWT.model;
+
+import java.util.List;
+
+// The user-independent, never changing part of a rendered project: the project, its creator and its tasks
+public class ProjectTemplate {
+    private final ProjectSummary project;
+    private final List<TaskSummary> tasks;
+
+    public ProjectTemplate(ProjectSummary project, List<TaskSummary> tasks) {
+        this.project = project;
+        this.tasks = tasks;
+    }
+
+    public ProjectSummary getProject() {
+        return project;
+    }
+
+    public List<TaskSummary> getTasks() {
+        return tasks;
+    }
+
+    public boolean hasTask(Long taskId) {
+        return tasks.stream().anyMatch(task -> task.getId().equals(taskId));
+    }
+}
@@ -0,0 +1,51 @@
+package com.ivoka.authJWT.model;
+
+public class TaskSummary {
+    private Long projectId;
+    private Long id;
+    private String text;
+    private Long userVoteCount;
+
+    public TaskSummary(Long projectId, Long id, String text, Long userVoteCount) {
+        this.projectId = projectId;
+        this.id = id;
+        this.text = text;
+        this.userVoteCount = userVoteCount;
+    }
+
+    public Long getProjectId() {
+        return projectId;
+    }
+
+    public void setProjectId(Long projectId) {
+        this.projectId = projectId;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    public Long getUserVoteCount() {
+        return userVoteCount;
+    }
+
+    public void setUserVoteCount(Long userVoteCount) {
+        this.userVoteCount = userVoteCount;
+    }
+
+    public boolean isSelectedByUser() {
+        return userVoteCount != null && userVoteCount > 0;
+    }
+}
@@ -0,0 +1,55 @@
+package com.ivoka.authJWT.model;
+
+import javax.persistence.*;
+
+/**
+ * Materialized number of votes per task, kept in step with the votes table when a vote is cast.
+ */
+@Entity
+@Table(name = "task_vote_counters", indexes = {
+        @Index(name = "idx_task_vote_counters_project_id", columnList = "projectId")
+})
+public class TaskVoteCounter {
+    @Id
+    private Long taskId;
+
+    @Column(nullable = false)
+    private Long projectId;
+
+    @Column(nullable = false)
+    private long voteCount;
+
+    public TaskVoteCounter() {
+
+    }
+
+    public TaskVoteCounter(Long taskId, Long projectId, long voteCount) {
+        this.taskId = taskId;
+        this.projectId = projectId;
+        this.voteCount = voteCount;
+    }
+
+    public Long getTaskId() {
+        return taskId;
+    }
+
+    public void setTaskId(Long taskId) {
+        this.taskId = taskId;
+    }
+
+    public Long getProjectId() {
+        return projectId;
+    }
+
+    public void setProjectId(Long projectId) {
+        this.projectId = projectId;
+    }
+
+    public long getVoteCount() {
+        return voteCount;
+    }
+
+    public void setVoteCount(long voteCount) {
+        this.voteCount = voteCount;
+    }
+}
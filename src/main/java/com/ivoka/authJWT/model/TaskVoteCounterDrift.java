@@ -0,0 +1,47 @@
+package com.ivoka.authJWT.model;
+
+public class TaskVoteCounterDrift {
+    private Long taskId;
+    private Long projectId;
+    private Long storedCount;
+    private Long actualCount;
+
+    public TaskVoteCounterDrift(Long taskId, Long projectId, Long storedCount, Long actualCount) {
+        this.taskId = taskId;
+        this.projectId = projectId;
+        this.storedCount = storedCount;
+        this.actualCount = actualCount;
+    }
+
+    public Long getTaskId() {
+        return taskId;
+    }
+
+    public void setTaskId(Long taskId) {
+        this.taskId = taskId;
+    }
+
+    public Long getProjectId() {
+        return projectId;
+    }
+
+    public void setProjectId(Long projectId) {
+        this.projectId = projectId;
+    }
+
+    public Long getStoredCount() {
+        return storedCount;
+    }
+
+    public void setStoredCount(Long storedCount) {
+        this.storedCount = storedCount;
+    }
+
+    public Long getActualCount() {
+        return actualCount;
+    }
+
+    public void setActualCount(Long actualCount) {
+        this.actualCount = actualCount;
+    }
+}
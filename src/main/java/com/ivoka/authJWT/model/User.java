@@ -3,6 +3,7 @@ package com.ivoka.authJWT.model;
 
 import com.ivoka.authJWT.model.audit.DateAudit;
 import lombok.Data;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.NaturalId;
 import org.hibernate.validator.constraints.Length;
 
@@ -15,16 +16,22 @@ import java.util.HashSet;
 import java.util.Set;
 
 @Entity
+@Cacheable
+@org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
 @Table(name = "users", uniqueConstraints = {
-        @UniqueConstraint(columnNames = {
+        @UniqueConstraint(name = User.USERNAME_CONSTRAINT, columnNames = {
                 "username"
         }),
-        @UniqueConstraint(columnNames = {
+        @UniqueConstraint(name = User.EMAIL_CONSTRAINT, columnNames = {
                 "email"
         })
 })
 public class User extends DateAudit {
 
+    // Named so that signup can tell from a violation which field is taken
+    public static final String USERNAME_CONSTRAINT = "uk_users_username";
+    public static final String EMAIL_CONSTRAINT = "uk_users_email";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -48,6 +55,7 @@ public class User extends DateAudit {
     private String password;
 
     @ManyToMany(fetch = FetchType.LAZY)
+    @org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
     @JoinTable(name = "user_roles",
             joinColumns = @JoinColumn(name = "user_id"),
             inverseJoinColumns = @JoinColumn(name = "role_id"))
@@ -0,0 +1,66 @@
+package com.ivoka.authJWT.model;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * Per-user activity totals for the profile page, kept in step with projects and votes as they are created.
+ */
+@Entity
+@Table(name = "user_stats")
+public class UserStats {
+    @Id
+    private Long userId;
+
+    @Column(nullable = false)
+    private long projectCount;
+
+    @Column(nullable = false)
+    private long voteCount;
+
+    @Column(nullable = false)
+    private Instant lastActivityAt;
+
+    public UserStats() {
+
+    }
+
+    public UserStats(Long userId, long projectCount, long voteCount, Instant lastActivityAt) {
+        this.userId = userId;
+        this.projectCount = projectCount;
+        this.voteCount = voteCount;
+        this.lastActivityAt = lastActivityAt;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public long getProjectCount() {
+        return projectCount;
+    }
+
+    public void setProjectCount(long projectCount) {
+        this.projectCount = projectCount;
+    }
+
+    public long getVoteCount() {
+        return voteCount;
+    }
+
+    public void setVoteCount(long voteCount) {
+        this.voteCount = voteCount;
+    }
+
+    public Instant getLastActivityAt() {
+        return lastActivityAt;
+    }
+
+    public void setLastActivityAt(Instant lastActivityAt) {
+        this.lastActivityAt = lastActivityAt;
+    }
+}
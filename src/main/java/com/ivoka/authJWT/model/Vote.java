@@ -10,6 +10,8 @@ import javax.persistence.*;
                 "project_id",
                 "user_id"
         })
+}, indexes = {
+        @Index(name = "idx_votes_user_id_created_at_id", columnList = "user_id, createdAt, id")
 })
 public class Vote extends DateAudit {
 
@@ -0,0 +1,39 @@
+package com.ivoka.authJWT.model;
+
+import java.time.Instant;
+
+public class VotedProject {
+    private Long voteId;
+    private Long projectId;
+    private Instant votedAt;
+
+    public VotedProject(Long voteId, Long projectId, Instant votedAt) {
+        this.voteId = voteId;
+        this.projectId = projectId;
+        this.votedAt = votedAt;
+    }
+
+    public Long getVoteId() {
+        return voteId;
+    }
+
+    public void setVoteId(Long voteId) {
+        this.voteId = voteId;
+    }
+
+    public Long getProjectId() {
+        return projectId;
+    }
+
+    public void setProjectId(Long projectId) {
+        this.projectId = projectId;
+    }
+
+    public Instant getVotedAt() {
+        return votedAt;
+    }
+
+    public void setVotedAt(Instant votedAt) {
+        this.votedAt = votedAt;
+    }
+}
@@ -1,5 +1,7 @@
 package com.ivoka.authJWT.payload;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.util.List;
 
 public class PagedResponse<T> {
@@ -11,6 +13,10 @@ public class PagedResponse<T> {
     private int totalPages;
     private boolean last;
 
+    // Only set by cursor-paginated feeds; totals are not computed there and are reported as -1
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextCursor;
+
     public PagedResponse() {
 
     }
@@ -24,6 +30,11 @@ public class PagedResponse<T> {
         this.last = last;
     }
 
+    public PagedResponse(List<T> content, int size, boolean last, String nextCursor) {
+        this(content, 0, size, -1, -1, last);
+        this.nextCursor = nextCursor;
+    }
+
     public List<T> getContent() {
         return content;
     }
@@ -71,4 +82,12 @@ public class PagedResponse<T> {
     public void setLast(boolean last) {
         this.last = last;
     }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
 }
@@ -9,14 +9,17 @@ public class UserProfile {
     private Instant joinedAt;
     private Long projectCount;
     private Long voteCount;
+    private Instant lastActivityAt;
 
-    public UserProfile(Long id, String username, String name, Instant joinedAt, Long projectCount, Long voteCount) {
+    public UserProfile(Long id, String username, String name, Instant joinedAt, Long projectCount, Long voteCount,
+                       Instant lastActivityAt) {
         this.id = id;
         this.username = username;
         this.name = name;
         this.joinedAt = joinedAt;
         this.projectCount = projectCount;
         this.voteCount = voteCount;
+        this.lastActivityAt = lastActivityAt;
     }
 
     public Long getId() {
@@ -66,5 +69,12 @@ public class UserProfile {
     public void setTaskCount(Long voteCount) {
         this.voteCount = voteCount;
     }
-}
 
+    public Instant getLastActivityAt() {
+        return lastActivityAt;
+    }
+
+    public void setLastActivityAt(Instant lastActivityAt) {
+        this.lastActivityAt = lastActivityAt;
+    }
+}
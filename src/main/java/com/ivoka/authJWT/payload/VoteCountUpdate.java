@@ -0,0 +1,40 @@
+package com.ivoka.authJWT.payload;
+
+import java.util.Map;
+
+public class VoteCountUpdate {
+    private Long projectId;
+    // taskId -> vote count; every task on the initial event, only the changed ones afterwards
+    private Map<Long, Long> voteCounts;
+    private Long totalVotes;
+
+    public VoteCountUpdate(Long projectId, Map<Long, Long> voteCounts, Long totalVotes) {
+        this.projectId = projectId;
+        this.voteCounts = voteCounts;
+        this.totalVotes = totalVotes;
+    }
+
+    public Long getProjectId() {
+        return projectId;
+    }
+
+    public void setProjectId(Long projectId) {
+        this.projectId = projectId;
+    }
+
+    public Map<Long, Long> getVoteCounts() {
+        return voteCounts;
+    }
+
+    public void setVoteCounts(Map<Long, Long> voteCounts) {
+        this.voteCounts = voteCounts;
+    }
+
+    public Long getTotalVotes() {
+        return totalVotes;
+    }
+
+    public void setTotalVotes(Long totalVotes) {
+        this.totalVotes = totalVotes;
+    }
+}
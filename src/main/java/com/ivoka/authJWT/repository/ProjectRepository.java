@@ -1,12 +1,16 @@
 package com.ivoka.authJWT.repository;
 
 import com.ivoka.authJWT.model.Project;
+import com.ivoka.authJWT.model.ProjectSummary;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,7 +23,31 @@ public interface ProjectRepository extends JpaRepository<Project, Long> {
 
     long countByCreatedBy(Long userId);
 
-    List<Project> findByIdIn(List<Long> projectIds);
-
-    List<Project> findByIdIn(List<Long> projectIds, Sort sort);
+    @Query(value = "SELECT NEW com.ivoka.authJWT.model.ProjectSummary(p.id, p.projectName, p.createdAt, p.expirationDateTime, u.id, u.username, u.name) " +
+            "FROM Project p, User u WHERE u.id = p.createdBy",
+            countQuery = "SELECT COUNT(p.id) FROM Project p")
+    Page<ProjectSummary> findAllSummaries(Pageable pageable);
+
+    @Query(value = "SELECT NEW com.ivoka.authJWT.model.ProjectSummary(p.id, p.projectName, p.createdAt, p.expirationDateTime, u.id, u.username, u.name) " +
+            "FROM Project p, User u WHERE u.id = p.createdBy AND p.createdBy = :userId",
+            countQuery = "SELECT COUNT(p.id) FROM Project p WHERE p.createdBy = :userId")
+    Page<ProjectSummary> findSummariesByCreatedBy(@Param("userId") Long userId, Pageable pageable);
+
+    @Query("SELECT NEW com.ivoka.authJWT.model.ProjectSummary(p.id, p.projectName, p.createdAt, p.expirationDateTime, u.id, u.username, u.name) " +
+            "FROM Project p, User u WHERE u.id = p.createdBy AND p.id IN :projectIds")
+    List<ProjectSummary> findSummariesByIdIn(@Param("projectIds") List<Long> projectIds, Sort sort);
+
+    // Keyset pagination: rows strictly after the (createdAt, id) position, newest first
+    @Query("SELECT NEW com.ivoka.authJWT.model.ProjectSummary(p.id, p.projectName, p.createdAt, p.expirationDateTime, u.id, u.username, u.name) " +
+            "FROM Project p, User u WHERE u.id = p.createdBy " +
+            "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) " +
+            "ORDER BY p.createdAt DESC, p.id DESC")
+    List<ProjectSummary> findSummariesBefore(@Param("createdAt") Instant createdAt, @Param("id") Long id, Pageable pageable);
+
+    @Query("SELECT NEW com.ivoka.authJWT.model.ProjectSummary(p.id, p.projectName, p.createdAt, p.expirationDateTime, u.id, u.username, u.name) " +
+            "FROM Project p, User u WHERE u.id = p.createdBy AND p.createdBy = :userId " +
+            "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) " +
+            "ORDER BY p.createdAt DESC, p.id DESC")
+    List<ProjectSummary> findSummariesByCreatedByBefore(@Param("userId") Long userId, @Param("createdAt") Instant createdAt,
+                                                        @Param("id") Long id, Pageable pageable);
 }
@@ -9,5 +9,6 @@ import java.util.Optional;
 
 @Repository
 public interface RoleRepository extends JpaRepository<Role, Long> {
+    // Only asked for roles RoleService has not loaded at startup
     Optional<Role> findByName(RoleName roleName);
 }
@@ -0,0 +1,26 @@
+package com.ivoka.authJWT.repository;
+
+import com.ivoka.authJWT.model.ProjectTaskRow;
+import com.ivoka.authJWT.model.Task;
+import com.ivoka.authJWT.model.TaskSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface TaskRepository extends JpaRepository<Task, Long> {
+    // Tasks of the given projects and whether userId voted for them, in a single statement; counts come from VoteTallyEngine
+    @Query("SELECT NEW com.ivoka.authJWT.model.TaskSummary(t.project.id, t.id, t.text, COUNT(v.id)) " +
+            "FROM Task t LEFT JOIN Vote v ON v.task = t AND v.user.id = :userId " +
+            "WHERE t.project.id IN :projectIds " +
+            "GROUP BY t.project.id, t.id, t.text ORDER BY t.id")
+    List<TaskSummary> findSummariesByProjectIdIn(@Param("projectIds") List<Long> projectIds, @Param("userId") Long userId);
+
+    // The project and its tasks through the tasks.project_id index, used to validate and answer a vote in one read
+    @Query("SELECT NEW com.ivoka.authJWT.model.ProjectTaskRow(p.id, p.projectName, p.createdAt, p.expirationDateTime, " +
+            "p.createdBy, t.id, t.text) FROM Task t JOIN t.project p WHERE t.project.id = :projectId ORDER BY t.id")
+    List<ProjectTaskRow> findRowsByProjectId(@Param("projectId") Long projectId);
+}
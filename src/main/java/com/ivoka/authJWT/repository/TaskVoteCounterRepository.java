@@ -0,0 +1,41 @@
+package com.ivoka.authJWT.repository;
+
+import com.ivoka.authJWT.model.TaskVoteCounter;
+import com.ivoka.authJWT.model.TaskVoteCounterDrift;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface TaskVoteCounterRepository extends JpaRepository<TaskVoteCounter, Long> {
+    List<TaskVoteCounter> findByProjectIdIn(List<Long> projectIds);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE TaskVoteCounter c SET c.voteCount = c.voteCount + :delta WHERE c.taskId = :taskId")
+    int addVotes(@Param("taskId") Long taskId, @Param("delta") long delta);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE TaskVoteCounter c SET c.voteCount = c.voteCount + :delta " +
+            "WHERE c.taskId = :taskId AND c.voteCount = :storedCount")
+    int addVotesIfUnchanged(@Param("taskId") Long taskId, @Param("storedCount") long storedCount,
+                            @Param("delta") long delta);
+
+    // Backfills counters for tasks created before counters existed; the reconciler then corrects their counts
+    @Transactional
+    @Modifying
+    @Query("INSERT INTO TaskVoteCounter (taskId, projectId, voteCount) SELECT t.id, t.project.id, 0L FROM Task t " +
+            "WHERE NOT EXISTS (SELECT c.taskId FROM TaskVoteCounter c WHERE c.taskId = t.id)")
+    int createMissingCounters();
+
+    @Query("SELECT NEW com.ivoka.authJWT.model.TaskVoteCounterDrift(c.taskId, c.projectId, c.voteCount, COUNT(v.id)) " +
+            "FROM TaskVoteCounter c LEFT JOIN Vote v ON v.task.id = c.taskId " +
+            "GROUP BY c.taskId, c.projectId, c.voteCount HAVING COUNT(v.id) <> c.voteCount")
+    List<TaskVoteCounterDrift> findDriftedCounters();
+}
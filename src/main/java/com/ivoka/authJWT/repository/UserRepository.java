@@ -1,9 +1,17 @@
 package com.ivoka.authJWT.repository;
 
 import com.ivoka.authJWT.model.User;
+import com.ivoka.authJWT.model.UserIdentity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,4 +28,21 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Boolean existsByUsername(String username);
 
     Boolean existsByEmail(String email);
+
+    // Keyset pages of all usernames and emails, for loading UserIdentityFilter
+    @Query("SELECT NEW com.ivoka.authJWT.model.UserIdentity(u.id, u.username, u.email) FROM User u WHERE u.id > :afterId ORDER BY u.id")
+    List<UserIdentity> findIdentitiesAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    @EntityGraph(attributePaths = "roles")
+    Optional<User> findWithRolesById(Long id);
+
+    @EntityGraph(attributePaths = "roles")
+    Optional<User> findWithRolesByUsernameOrEmail(String username, String email);
+
+    // Only replaces the hash the caller read, so a concurrent password change is never overwritten
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.password = :newPassword, u.updatedAt = :updatedAt WHERE u.id = :userId AND u.password = :oldPassword")
+    int updatePassword(@Param("userId") Long userId, @Param("oldPassword") String oldPassword,
+                       @Param("newPassword") String newPassword, @Param("updatedAt") Instant updatedAt);
 }
@@ -0,0 +1,20 @@
+package com.ivoka.authJWT.repository;
+
+import com.ivoka.authJWT.model.UserStats;
+import com.ivoka.authJWT.payload.UserProfile;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface UserStatsRepository extends JpaRepository<UserStats, Long> {
+
+    // One statement: the unique username lookup joined to the stats row by primary key. Users without activity have no row
+    @Query("SELECT NEW com.ivoka.authJWT.payload.UserProfile(u.id, u.username, u.name, u.createdAt, " +
+            "COALESCE(s.projectCount, 0L), COALESCE(s.voteCount, 0L), COALESCE(s.lastActivityAt, u.createdAt)) " +
+            "FROM User u LEFT JOIN UserStats s ON s.userId = u.id WHERE u.username = :username")
+    Optional<UserProfile> findProfileByUsername(@Param("username") String username);
+}
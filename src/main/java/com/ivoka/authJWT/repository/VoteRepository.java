@@ -2,6 +2,7 @@ package com.ivoka.authJWT.repository;
 
 import com.ivoka.authJWT.model.TaskVoteCount;
 import com.ivoka.authJWT.model.Vote;
+import com.ivoka.authJWT.model.VotedProject;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -9,6 +10,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
 import java.util.List;
 
 @Repository
@@ -25,10 +27,26 @@ public interface VoteRepository extends JpaRepository<Vote, Long> {
     @Query("SELECT v FROM Vote v where v.user.id = :userId and v.project.id = :projectId")
     Vote findByUserIdAndProjectId(@Param("userId") Long userId, @Param("projectId") Long projectId);
 
+    @Query("SELECT v.task.id FROM Vote v WHERE v.user.id = :userId AND v.project.id = :projectId")
+    Long findTaskIdByUserIdAndProjectId(@Param("userId") Long userId, @Param("projectId") Long projectId);
+
+    boolean existsByUserIdAndProjectId(Long userId, Long projectId);
+
+    // Covered by the (project_id, user_id) unique index
+    @Query("SELECT v.user.id FROM Vote v WHERE v.project.id = :projectId")
+    List<Long> findUserIdsByProjectId(@Param("projectId") Long projectId);
+
     @Query("SELECT COUNT(v.id) from Vote v where v.user.id = :userId")
     long countByUserId(@Param("userId") Long userId);
 
     @Query("SELECT v.project.id FROM Vote v WHERE v.user.id = :userId")
     Page<Long> findVotedProjectIdsByUserId(@Param("userId") Long userId, Pageable pageable);
+
+    // Keyset pagination over the user's votes: rows strictly after the (createdAt, id) position, newest first
+    @Query("SELECT NEW com.ivoka.authJWT.model.VotedProject(v.id, v.project.id, v.createdAt) FROM Vote v " +
+            "WHERE v.user.id = :userId AND (v.createdAt < :createdAt OR (v.createdAt = :createdAt AND v.id < :id)) " +
+            "ORDER BY v.createdAt DESC, v.id DESC")
+    List<VotedProject> findVotedProjectsByUserIdBefore(@Param("userId") Long userId, @Param("createdAt") Instant createdAt,
+                                                       @Param("id") Long id, Pageable pageable);
 }
 
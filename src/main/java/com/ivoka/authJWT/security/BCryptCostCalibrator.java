@@ -0,0 +1,44 @@
+package com.ivoka.authJWT.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+
+/**
+ * Picks the highest BCrypt cost whose hashing time on this machine stays within a target.
+ */
+public final class BCryptCostCalibrator {
+
+    private static final Logger logger = LoggerFactory.getLogger(BCryptCostCalibrator.class);
+
+    private static final int MIN_COST = 4;
+    private static final int MAX_COST = 31;
+
+    private BCryptCostCalibrator() {
+
+    }
+
+    // Never returns less than minStrength, even when the machine is too slow to meet the target
+    public static int calibrate(int minStrength, long targetMillis) {
+        // Warm up so the first measurement is not dominated by class loading and JIT
+        measure(MIN_COST);
+
+        int strength = Math.max(MIN_COST, minStrength);
+        long elapsed = measure(strength);
+
+        // Every extra cost step doubles the hashing time
+        while (strength < MAX_COST && elapsed * 2 <= targetMillis) {
+            strength++;
+            elapsed = measure(strength);
+        }
+
+        logger.info("Calibrated BCrypt cost to {} ({} ms per hash, target {} ms)", strength, elapsed, targetMillis);
+        return strength;
+    }
+
+    private static long measure(int strength) {
+        long start = System.nanoTime();
+        BCrypt.hashpw("calibration-password", BCrypt.gensalt(strength));
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+}
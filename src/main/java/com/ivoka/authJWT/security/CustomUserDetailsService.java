@@ -1,14 +1,21 @@
 package com.ivoka.authJWT.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.ivoka.authJWT.model.User;
 import com.ivoka.authJWT.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
-import javax.transaction.Transactional;
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.Locale;
 
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
@@ -16,26 +23,81 @@ public class CustomUserDetailsService implements UserDetailsService {
     @Autowired
     UserRepository userRepository;
 
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Value("${app.userCacheMaxSize:10000}")
+    private long userCacheMaxSize;
+
+    @Value("${app.userCacheTtlSeconds:300}")
+    private long userCacheTtlSeconds;
+
+    private Cache<Long, UserPrincipal> principalsById;
+
+    private Cache<String, UserPrincipal> principalsByLogin;
+
+    @PostConstruct
+    void init() {
+        principalsById = Caffeine.newBuilder()
+                .maximumSize(userCacheMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(userCacheTtlSeconds))
+                .recordStats()
+                .build();
+
+        principalsByLogin = Caffeine.newBuilder()
+                .maximumSize(userCacheMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(userCacheTtlSeconds))
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, principalsById, "userPrincipalsById");
+        CaffeineCacheMetrics.monitor(meterRegistry, principalsByLogin, "userPrincipalsByLogin");
+    }
+
     @Override
-    @Transactional
     public UserDetails loadUserByUsername(String usernameOrEmail)
             throws UsernameNotFoundException {
         // Let people login with either username or email
-        User user = userRepository.findByUsernameOrEmail(usernameOrEmail, usernameOrEmail)
-                .orElseThrow(() ->
-                        new UsernameNotFoundException("User not found with username or email : " + usernameOrEmail)
-                );
+        return principalsByLogin.get(loginKey(usernameOrEmail), key -> {
+            User user = userRepository.findWithRolesByUsernameOrEmail(usernameOrEmail, usernameOrEmail)
+                    .orElseThrow(() ->
+                            new UsernameNotFoundException("User not found with username or email : " + usernameOrEmail)
+                    );
 
-        return UserPrincipal.create(user);
+            UserPrincipal userPrincipal = UserPrincipal.create(user);
+            principalsById.put(userPrincipal.getId(), userPrincipal);
+            return userPrincipal;
+        });
     }
 
     // This method is used by JWTAuthenticationFilter
-    @Transactional
     public UserDetails loadUserById(Long id) {
-        User user = userRepository.findById(id).orElseThrow(
-                () -> new UsernameNotFoundException("User not found with id : " + id)
-        );
+        return principalsById.get(id, key -> {
+            User user = userRepository.findWithRolesById(id).orElseThrow(
+                    () -> new UsernameNotFoundException("User not found with id : " + id)
+            );
+
+            return UserPrincipal.create(user);
+        });
+    }
+
+    // Must be called whenever a user is created or its roles or password change
+    public void evictUser(User user) {
+        evictUser(user.getId(), user.getUsername(), user.getEmail());
+    }
+
+    public void evictUser(UserPrincipal userPrincipal) {
+        evictUser(userPrincipal.getId(), userPrincipal.getUsername(), userPrincipal.getEmail());
+    }
+
+    private void evictUser(Long id, String username, String email) {
+        principalsById.invalidate(id);
+        principalsByLogin.invalidate(loginKey(username));
+        principalsByLogin.invalidate(loginKey(email));
+    }
 
-        return UserPrincipal.create(user);
+    // Usernames and emails are matched case-insensitively by the users table collation
+    private static String loginKey(String usernameOrEmail) {
+        return usernameOrEmail.toLowerCase(Locale.ROOT);
     }
-}
\ No newline at end of file
+}
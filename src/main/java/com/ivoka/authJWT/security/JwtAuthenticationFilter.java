@@ -24,6 +24,9 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     @Autowired
     private CustomUserDetailsService customUserDetailsService;
 
+    @Autowired
+    private VerifiedTokenCache tokenCache;
+
     private static final Logger logger = LoggerFactory.getLogger(JwtAuthenticationFilter.class);
 
     @Override
@@ -31,10 +34,18 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             String jwt = getJwtFromRequest(request);
 
-            if (StringUtils.hasText(jwt) && tokenProvider.validateToken(jwt)) {
-                Long userId = tokenProvider.getUserIdFromJWT(jwt);
+            VerifiedJwt token = StringUtils.hasText(jwt) ? resolveToken(jwt) : null;
+
+            if (token != null) {
+                UserDetails userDetails = null;
+                if (tokenProvider.isStatelessAuth()) {
+                    userDetails = token.toUserPrincipal();
+                }
+
+                if (userDetails == null) {
+                    userDetails = customUserDetailsService.loadUserById(token.getUserId());
+                }
 
-                UserDetails userDetails = customUserDetailsService.loadUserById(userId);
                 UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
                 authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 
@@ -47,6 +58,21 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    private VerifiedJwt resolveToken(String jwt) {
+        VerifiedJwt token = tokenCache.get(jwt);
+        if (token != null) {
+            return token;
+        }
+
+        JwtValidationResult result = tokenProvider.parseAndValidate(jwt);
+        if (!result.isValid()) {
+            return null;
+        }
+
+        tokenCache.put(jwt, result.getToken());
+        return result.getToken();
+    }
+
     private String getJwtFromRequest(HttpServletRequest request) {
         String bearerToken = request.getHeader("Authorization");
         if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
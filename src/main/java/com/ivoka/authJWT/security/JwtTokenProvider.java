@@ -1,24 +1,59 @@
 package com.ivoka.authJWT.security;
 
 import io.jsonwebtoken.*;
+import io.jsonwebtoken.impl.TextCodec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.Key;
 import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
 
 @Component
 public class JwtTokenProvider {
 
     private static final Logger logger = LoggerFactory.getLogger(JwtTokenProvider.class);
 
+    private static final SignatureAlgorithm SIGNATURE_ALGORITHM = SignatureAlgorithm.HS512;
+
+    private static final String CLAIM_USERNAME = "username";
+    private static final String CLAIM_NAME = "name";
+    private static final String CLAIM_ROLES = "roles";
+    private static final String CLAIM_VERSION = "ver";
+
     @Value("${app.jwtSecret}")
     private String jwtSecret;
 
     @Value("${app.jwtExpirationInMs}")
     private int jwtExpirationInMs;
 
+    // When enabled, tokens carry the user's identity and roles so that requests can be authenticated without a DB lookup
+    @Value("${app.jwtStatelessAuth:false}")
+    private boolean statelessAuth;
+
+    // Bump to invalidate every token issued with user claims (e.g. after a role change)
+    @Value("${app.jwtClaimsVersion:1}")
+    private int claimsVersion;
+
+    // Decoded once; the configured parser does not mutate its state while parsing and is shared by all requests
+    private Key signingKey;
+
+    private JwtParser jwtParser;
+
+    @PostConstruct
+    void init() {
+        // Same base64 decoding jjwt applies to a String key, so existing tokens stay valid
+        signingKey = new SecretKeySpec(TextCodec.BASE64.decode(jwtSecret), SIGNATURE_ALGORITHM.getJcaName());
+        jwtParser = Jwts.parser().setSigningKey(signingKey);
+    }
+
     public String generateToken(Authentication authentication) {
 
         UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
@@ -26,38 +61,83 @@ public class JwtTokenProvider {
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + jwtExpirationInMs);
 
-        return Jwts.builder()
+        JwtBuilder builder = Jwts.builder()
                 .setSubject(Long.toString(userPrincipal.getId()))
                 .setIssuedAt(new Date())
-                .setExpiration(expiryDate)
-                .signWith(SignatureAlgorithm.HS512, jwtSecret)
+                .setExpiration(expiryDate);
+
+        if (statelessAuth) {
+            List<String> roles = userPrincipal.getAuthorities().stream()
+                    .map(GrantedAuthority::getAuthority)
+                    .collect(Collectors.toList());
+
+            builder.claim(CLAIM_USERNAME, userPrincipal.getUsername())
+                    .claim(CLAIM_NAME, userPrincipal.getName())
+                    .claim(CLAIM_ROLES, roles)
+                    .claim(CLAIM_VERSION, claimsVersion);
+        }
+
+        return builder
+                .signWith(SIGNATURE_ALGORITHM, signingKey)
                 .compact();
     }
 
-    public Long getUserIdFromJWT(String token) {
-        Claims claims = Jwts.parser()
-                .setSigningKey(jwtSecret)
-                .parseClaimsJws(token)
-                .getBody();
-
-        return Long.parseLong(claims.getSubject());
+    public boolean isStatelessAuth() {
+        return statelessAuth;
     }
 
-    public boolean validateToken(String authToken) {
+    /**
+     * Verifies the signature and expiry exactly once and extracts every claim the filter needs.
+     */
+    @SuppressWarnings("unchecked")
+    public JwtValidationResult parseAndValidate(String authToken) {
+        Claims claims;
+        long userId;
+        String username;
+        String name;
+        Integer version;
+        List<String> roles;
         try {
-            Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(authToken);
-            return true;
+            claims = jwtParser.parseClaimsJws(authToken).getBody();
+            // Inside the try so that a token signed with our key but carrying bad claims is rejected, not a 500
+            userId = Long.parseLong(claims.getSubject());
+            username = claims.get(CLAIM_USERNAME, String.class);
+            name = claims.get(CLAIM_NAME, String.class);
+            version = claims.get(CLAIM_VERSION, Integer.class);
+            roles = claims.get(CLAIM_ROLES, List.class);
         } catch (SignatureException ex) {
             logger.error("Invalid JWT signature");
-        } catch (MalformedJwtException ex) {
+            return JwtValidationResult.invalid(JwtValidationResult.Failure.INVALID_SIGNATURE);
+        } catch (MalformedJwtException | RequiredTypeException | NumberFormatException ex) {
             logger.error("Invalid JWT token");
+            return JwtValidationResult.invalid(JwtValidationResult.Failure.MALFORMED);
         } catch (ExpiredJwtException ex) {
             logger.error("Expired JWT token");
+            return JwtValidationResult.invalid(JwtValidationResult.Failure.EXPIRED);
         } catch (UnsupportedJwtException ex) {
             logger.error("Unsupported JWT token");
+            return JwtValidationResult.invalid(JwtValidationResult.Failure.UNSUPPORTED);
         } catch (IllegalArgumentException ex) {
             logger.error("JWT claims string is empty.");
+            return JwtValidationResult.invalid(JwtValidationResult.Failure.EMPTY);
         }
-        return false;
+
+        if (version != null && version != claimsVersion) {
+            logger.error("Stale JWT claims version");
+            return JwtValidationResult.invalid(JwtValidationResult.Failure.STALE_VERSION);
+        }
+
+        Date issuedAt = claims.getIssuedAt();
+        Date expiration = claims.getExpiration();
+
+        return JwtValidationResult.valid(new VerifiedJwt(
+                userId,
+                username,
+                name,
+                roles,
+                version,
+                issuedAt == null ? 0L : issuedAt.getTime(),
+                expiration == null ? Long.MAX_VALUE : expiration.getTime()
+        ));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,44 @@
+package com.ivoka.authJWT.security;
+
+/**
+ * Outcome of {@link JwtTokenProvider#parseAndValidate(String)}: either the verified token or the reason it was rejected.
+ */
+public final class JwtValidationResult {
+
+    public enum Failure {
+        INVALID_SIGNATURE,
+        MALFORMED,
+        EXPIRED,
+        UNSUPPORTED,
+        EMPTY,
+        STALE_VERSION
+    }
+
+    private final VerifiedJwt token;
+    private final Failure failure;
+
+    private JwtValidationResult(VerifiedJwt token, Failure failure) {
+        this.token = token;
+        this.failure = failure;
+    }
+
+    public static JwtValidationResult valid(VerifiedJwt token) {
+        return new JwtValidationResult(token, null);
+    }
+
+    public static JwtValidationResult invalid(Failure failure) {
+        return new JwtValidationResult(null, failure);
+    }
+
+    public boolean isValid() {
+        return token != null;
+    }
+
+    public VerifiedJwt getToken() {
+        return token;
+    }
+
+    public Failure getFailure() {
+        return failure;
+    }
+}
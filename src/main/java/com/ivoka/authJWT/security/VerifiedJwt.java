@@ -0,0 +1,79 @@
+package com.ivoka.authJWT.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable view of a token whose signature and expiry have already been checked.
+ */
+public final class VerifiedJwt {
+    private final Long userId;
+    private final String username;
+    private final String name;
+    private final List<String> roles;
+    private final Integer claimsVersion;
+    private final long issuedAtMillis;
+    private final long expirationMillis;
+    private final UserPrincipal principal;
+
+    public VerifiedJwt(Long userId, String username, String name, List<String> roles,
+                       Integer claimsVersion, long issuedAtMillis, long expirationMillis) {
+        this.userId = userId;
+        this.username = username;
+        this.name = name;
+        this.roles = roles == null ? Collections.emptyList() : Collections.unmodifiableList(roles);
+        this.claimsVersion = claimsVersion;
+        this.issuedAtMillis = issuedAtMillis;
+        this.expirationMillis = expirationMillis;
+        this.principal = claimsVersion == null ? null : createPrincipal();
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getRoles() {
+        return roles;
+    }
+
+    public Integer getClaimsVersion() {
+        return claimsVersion;
+    }
+
+    public long getIssuedAtMillis() {
+        return issuedAtMillis;
+    }
+
+    public long getExpirationMillis() {
+        return expirationMillis;
+    }
+
+    public boolean hasUserClaims() {
+        return claimsVersion != null;
+    }
+
+    // Returns null when the token was issued without user claims, so the caller has to fall back to a DB lookup
+    public UserPrincipal toUserPrincipal() {
+        return principal;
+    }
+
+    private UserPrincipal createPrincipal() {
+        List<GrantedAuthority> authorities = roles.stream()
+                .map(SimpleGrantedAuthority::new)
+                .collect(Collectors.toList());
+
+        return new UserPrincipal(userId, name, username, null, null, authorities);
+    }
+}
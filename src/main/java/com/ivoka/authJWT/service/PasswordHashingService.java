@@ -0,0 +1,134 @@
+package com.ivoka.authJWT.service;
+
+import com.ivoka.authJWT.exception.ServiceUnavailableException;
+import com.ivoka.authJWT.repository.UserRepository;
+import com.ivoka.authJWT.security.CustomUserDetailsService;
+import com.ivoka.authJWT.security.UserPrincipal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs BCrypt hashing and verification on a CPU-sized pool so that a login burst cannot occupy every
+ * Tomcat worker thread. Database writes that follow a hash run on a separate, smaller storage pool so a slow
+ * database never holds a hashing thread. When either queue is full new work is rejected straight away with a 503.
+ */
+@Service
+public class PasswordHashingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PasswordHashingService.class);
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CustomUserDetailsService customUserDetailsService;
+
+    @Value("${app.passwordHashingQueueCapacity:64}")
+    private int queueCapacity;
+
+    @Value("${app.passwordStorageThreads:4}")
+    private int storageThreads;
+
+    private ThreadPoolExecutor executor;
+
+    private ThreadPoolExecutor storageExecutor;
+
+    @PostConstruct
+    void init() {
+        executor = newPool("password-hashing-", Runtime.getRuntime().availableProcessors());
+        storageExecutor = newPool("password-storage-", storageThreads);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+        storageExecutor.shutdown();
+    }
+
+    private ThreadPoolExecutor newPool(String namePrefix, int threads) {
+        AtomicInteger threadCount = new AtomicInteger();
+
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, namePrefix + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public CompletableFuture<String> encode(CharSequence rawPassword) {
+        return submit(() -> passwordEncoder.encode(rawPassword));
+    }
+
+    // For work that verifies a password, e.g. AuthenticationManager.authenticate
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException ex) {
+            logger.warn("Password hashing queue is full, rejecting request");
+            throw new ServiceUnavailableException("Server is busy, please try again shortly");
+        }
+    }
+
+    /**
+     * Continues with database work once a hash is ready, e.g. storing a new account. Runs on the storage pool;
+     * when its queue is full the returned future fails with a {@link ServiceUnavailableException}.
+     */
+    public <T, R> CompletableFuture<R> thenStore(CompletableFuture<T> hashed, Function<? super T, ? extends R> store) {
+        return hashed.thenApplyAsync(store, runnable -> {
+            try {
+                storageExecutor.execute(runnable);
+            } catch (RejectedExecutionException ex) {
+                logger.warn("Password storage queue is full, rejecting request");
+                throw new ServiceUnavailableException("Server is busy, please try again shortly");
+            }
+        });
+    }
+
+    /**
+     * Re-hashes a freshly verified password in the background when its stored encoding is outdated (legacy
+     * format or a lower BCrypt cost). Skipped when a pool is busy; the next login will try again. The returned
+     * future tells whether the stored hash was replaced.
+     */
+    public CompletableFuture<Boolean> upgradeIfNeeded(UserPrincipal userPrincipal, String rawPassword) {
+        String storedPassword = userPrincipal.getPassword();
+        if (storedPassword == null || !passwordEncoder.upgradeEncoding(storedPassword)) {
+            return CompletableFuture.completedFuture(false);
+        }
+
+        try {
+            return thenStore(encode(rawPassword), upgradedPassword -> {
+                int updated = userRepository.updatePassword(userPrincipal.getId(), storedPassword,
+                        upgradedPassword, Instant.now());
+                if (updated > 0) {
+                    customUserDetailsService.evictUser(userPrincipal);
+                    logger.info("Upgraded password encoding for user {}", userPrincipal.getId());
+                }
+                return updated > 0;
+            }).exceptionally(ex -> {
+                logger.warn("Could not upgrade password encoding for user {}", userPrincipal.getId(), ex);
+                return false;
+            });
+        } catch (ServiceUnavailableException ex) {
+            logger.debug("Skipping password upgrade for user {}, hashing pool is busy", userPrincipal.getId());
+            return CompletableFuture.completedFuture(false);
+        }
+    }
+}
@@ -1,34 +1,51 @@
 package com.ivoka.authJWT.service;
 
+import com.ivoka.authJWT.config.ReplicaRead;
+import com.ivoka.authJWT.exception.AppException;
 import com.ivoka.authJWT.exception.BadRequestException;
 import com.ivoka.authJWT.exception.ResourceNotFoundException;
+import com.ivoka.authJWT.exception.ServiceUnavailableException;
 import com.ivoka.authJWT.model.*;
 import com.ivoka.authJWT.payload.PagedResponse;
 import com.ivoka.authJWT.payload.ProjectRequest;
 import com.ivoka.authJWT.payload.ProjectResponse;
 import com.ivoka.authJWT.payload.VoteRequest;
 import com.ivoka.authJWT.repository.ProjectRepository;
+import com.ivoka.authJWT.repository.TaskRepository;
+import com.ivoka.authJWT.repository.TaskVoteCounterRepository;
 import com.ivoka.authJWT.repository.UserRepository;
 import com.ivoka.authJWT.repository.VoteRepository;
 import com.ivoka.authJWT.security.UserPrincipal;
 import com.ivoka.authJWT.util.AppConstants;
 import com.ivoka.authJWT.util.ModelMapper;
+import com.ivoka.authJWT.util.PageCursor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
-
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.function.Function;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 @Service
@@ -43,14 +60,50 @@ public class ProjectService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private TaskVoteCounterRepository taskVoteCounterRepository;
+
+    @Autowired
+    private VoteTallyEngine voteTallyEngine;
+
+    @Autowired
+    private VoteBatchWriter voteBatchWriter;
+
+    @Autowired
+    private VoteMembershipFilter voteMembershipFilter;
+
+    @Autowired
+    private ProjectTemplateCache projectTemplateCache;
+
+    @Autowired
+    private ProjectVersionTracker projectVersionTracker;
+
+    @Autowired
+    private VoteStreamService voteStreamService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private UserStatsService userStatsService;
+
+    @Value("${app.voteTimeoutMs:5000}")
+    private long voteTimeoutMs;
+
     private static final Logger logger = LoggerFactory.getLogger(ProjectService.class);
     
+    // Read-only: one session and connection for the whole request, flush mode MANUAL and no dirty checking
+    @ReplicaRead
+    @Transactional(readOnly = true)
     public PagedResponse<ProjectResponse> getAllProjects(UserPrincipal currentUser, int page, int size) {
         validatePageNumberAndSize(page, size);
 
-        // Retrieve Projects
+        // Retrieve Projects together with their creators
         Pageable pageable = PageRequest.of(page, size, Sort.Direction.DESC, "createdAt");
-        Page<Project> projects = projectRepository.findAll(pageable);
+        Page<ProjectSummary> projects = projectRepository.findAllSummaries(pageable);
 
         if(projects.getNumberOfElements() == 0) {
             return new PagedResponse<>(Collections.emptyList(), projects.getNumber(),
@@ -58,22 +111,14 @@ public class ProjectService {
         }
 
         // Map Projects to ProjectResponses containing vote counts and project creator details
-        List<Long> projectIds = projects.map(Project::getId).getContent();
-        Map<Long, Long> taskVoteCountMap = getTaskVoteCountMap(projectIds);
-        Map<Long, Long> projectUserVoteMap = getProjectUserVoteMap(currentUser, projectIds);
-        Map<Long, User> creatorMap = getProjectCreatorMap(projects.getContent());
-
-        List<ProjectResponse> projectResponses = projects.map(project -> {
-            return ModelMapper.mapProjectToProjectResponse(project,
-                    taskVoteCountMap,
-                    creatorMap.get(project.getCreatedBy()),
-                    projectUserVoteMap == null ? null : projectUserVoteMap.getOrDefault(project.getId(), null));
-        }).getContent();
+        List<ProjectResponse> projectResponses = mapProjectSummaries(projects.getContent(), currentUser);
 
         return new PagedResponse<>(projectResponses, projects.getNumber(),
                 projects.getSize(), projects.getTotalElements(), projects.getTotalPages(), projects.isLast());
     }
 
+    @ReplicaRead
+    @Transactional(readOnly = true)
     public PagedResponse<ProjectResponse> getProjectsCreatedBy(String username, UserPrincipal currentUser, int page, int size) {
         validatePageNumberAndSize(page, size);
 
@@ -82,7 +127,7 @@ public class ProjectService {
 
         // Retrieve all projectss created by the given username
         Pageable pageable = PageRequest.of(page, size, Sort.Direction.DESC, "createdAt");
-        Page<Project> projects = projectRepository.findByCreatedBy(user.getId(), pageable);
+        Page<ProjectSummary> projects = projectRepository.findSummariesByCreatedBy(user.getId(), pageable);
 
         if (projects.getNumberOfElements() == 0) {
             return new PagedResponse<>(Collections.emptyList(), projects.getNumber(),
@@ -90,21 +135,14 @@ public class ProjectService {
         }
 
         // Map Projects to ProjectResponses containing vote counts and project creator details
-        List<Long> projectIds = projects.map(Project::getId).getContent();
-        Map<Long, Long> taskVoteCountMap = getTaskVoteCountMap(projectIds);
-        Map<Long, Long> projectUserVoteMap = getProjectUserVoteMap(currentUser, projectIds);
-
-        List<ProjectResponse> projectResponses = projects.map(project -> {
-            return ModelMapper.mapProjectToProjectResponse(project,
-                    taskVoteCountMap,
-                    user,
-                    projectUserVoteMap == null ? null : projectUserVoteMap.getOrDefault(project.getId(), null));
-        }).getContent();
+        List<ProjectResponse> projectResponses = mapProjectSummaries(projects.getContent(), currentUser);
 
         return new PagedResponse<>(projectResponses, projects.getNumber(),
                 projects.getSize(), projects.getTotalElements(), projects.getTotalPages(), projects.isLast());
     }
 
+    @ReplicaRead
+    @Transactional(readOnly = true)
     public PagedResponse<ProjectResponse> getProjectsVotedBy(String username, UserPrincipal currentUser, int page, int size) {
         validatePageNumberAndSize(page, size);
 
@@ -125,23 +163,75 @@ public class ProjectService {
         List<Long> projectIds = userVotedProjectIds.getContent();
 
         Sort sort = new Sort(Sort.Direction.DESC, "createdAt");
-        List<Project> projects = projectRepository.findByIdIn(projectIds, sort);
+        List<ProjectSummary> projects = projectRepository.findSummariesByIdIn(projectIds, sort);
 
         // Map Projects to ProjectResponses containing vote counts and project creator details
-        Map<Long, Long> taskVoteCountMap = getTaskVoteCountMap(projectIds);
-        Map<Long, Long> projectUserVoteMap = getProjectUserVoteMap(currentUser, projectIds);
-        Map<Long, User> creatorMap = getProjectCreatorMap(projects);
-
-        List<ProjectResponse> projectResponses = projects.stream().map(project -> {
-            return ModelMapper.mapProjectToProjectResponse(project,
-                    taskVoteCountMap,
-                    creatorMap.get(project.getCreatedBy()),
-                    projectUserVoteMap == null ? null : projectUserVoteMap.getOrDefault(project.getId(), null));
-        }).collect(Collectors.toList());
+        List<ProjectResponse> projectResponses = mapProjectSummaries(projects, currentUser);
 
         return new PagedResponse<>(projectResponses, userVotedProjectIds.getNumber(), userVotedProjectIds.getSize(), userVotedProjectIds.getTotalElements(), userVotedProjectIds.getTotalPages(), userVotedProjectIds.isLast());
     }
 
+    @ReplicaRead
+    @Transactional(readOnly = true)
+    public PagedResponse<ProjectResponse> getAllProjects(UserPrincipal currentUser, PageCursor cursor, int size) {
+        validatePageNumberAndSize(0, size);
+
+        // Fetch one extra row to find out whether another page follows
+        List<ProjectSummary> projects = projectRepository.findSummariesBefore(cursor.getCreatedAt(), cursor.getId(),
+                PageRequest.of(0, size + 1));
+
+        return toCursorPage(projects, currentUser, size);
+    }
+
+    @ReplicaRead
+    @Transactional(readOnly = true)
+    public PagedResponse<ProjectResponse> getProjectsCreatedBy(String username, UserPrincipal currentUser, PageCursor cursor, int size) {
+        validatePageNumberAndSize(0, size);
+
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new ResourceNotFoundException("User", "username", username));
+
+        List<ProjectSummary> projects = projectRepository.findSummariesByCreatedByBefore(user.getId(),
+                cursor.getCreatedAt(), cursor.getId(), PageRequest.of(0, size + 1));
+
+        return toCursorPage(projects, currentUser, size);
+    }
+
+    @ReplicaRead
+    @Transactional(readOnly = true)
+    public PagedResponse<ProjectResponse> getProjectsVotedBy(String username, UserPrincipal currentUser, PageCursor cursor, int size) {
+        validatePageNumberAndSize(0, size);
+
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new ResourceNotFoundException("User", "username", username));
+
+        // The cursor walks the user's votes, newest first
+        List<VotedProject> votedProjects = voteRepository.findVotedProjectsByUserIdBefore(user.getId(),
+                cursor.getCreatedAt(), cursor.getId(), PageRequest.of(0, size + 1));
+
+        boolean last = votedProjects.size() <= size;
+        if (!last) {
+            votedProjects = votedProjects.subList(0, size);
+        }
+
+        if (votedProjects.isEmpty()) {
+            return new PagedResponse<>(Collections.emptyList(), size, true, null);
+        }
+
+        List<Long> projectIds = votedProjects.stream()
+                .map(VotedProject::getProjectId)
+                .collect(Collectors.toList());
+
+        Sort sort = new Sort(Sort.Direction.DESC, "createdAt");
+        List<ProjectResponse> projectResponses = mapProjectSummaries(projectRepository.findSummariesByIdIn(projectIds, sort), currentUser);
+
+        VotedProject lastVote = votedProjects.get(votedProjects.size() - 1);
+        String nextCursor = last ? null : new PageCursor(lastVote.getVotedAt(), lastVote.getVoteId()).encode();
+
+        return new PagedResponse<>(projectResponses, size, last, nextCursor);
+    }
+
+    @Transactional
     public Project createProject(ProjectRequest projectRequest) {
         Project project = new Project();
         project.setProjectName(projectRequest.getProjectName());
@@ -156,74 +246,120 @@ public class ProjectService {
 
         project.setExpirationDateTime(expirationDateTime);
 
-        return projectRepository.save(project);
+        Project result = projectRepository.save(project);
+
+        taskVoteCounterRepository.saveAll(result.getTasks().stream()
+                .map(task -> new TaskVoteCounter(task.getId(), result.getId(), 0))
+                .collect(Collectors.toList()));
+
+        // Registered, and the new version handed out, only once readers can see the project
+        Long projectId = result.getId();
+        List<Long> taskIds = result.getTasks().stream()
+                .map(Task::getId)
+                .collect(Collectors.toList());
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                voteTallyEngine.registerProject(projectId, taskIds);
+            }
+        });
+
+        userStatsService.recordProjectCreated(result.getCreatedBy(), result.getCreatedAt());
+
+        return result;
     }
 
 
-    public ProjectResponse getProjectById(Long projectId, UserPrincipal currentUser) {
-        Project project = projectRepository.findById(projectId).orElseThrow(
-                () -> new ResourceNotFoundException("Project", "id", projectId));
+    // Computed before rendering, so a matching If-None-Match skips getProjectById entirely. Reads nothing unless the
+    // project's tallies are due for a refresh; votes from other nodes then move the version like local ones.
+    public String getProjectEtag(Long projectId, UserPrincipal currentUser) {
+        voteTallyEngine.refreshIfStale(projectId);
+        boolean expired = projectTemplateCache.get(projectId).getProject().getExpirationDateTime().isBefore(Instant.now());
+
+        return projectVersionTracker.getBootId() + "-p" + projectVersionTracker.getProjectVersion(projectId) +
+                "-u" + (currentUser == null ? 0 : currentUser.getId()) + (expired ? "-e" : "");
+    }
+
+    // Expired flags in a listing flip without a change and other nodes' votes arrive with a tally refresh; the time
+    // bucket bounds how long either may stay stale, since rendering the listing refreshes its projects' tallies.
+    // The path and query are part of the tag so that one listing's tag never answers 304 for another listing.
+    public String getListingEtag(UserPrincipal currentUser, WebRequest webRequest) {
+        long minute = Instant.now().getEpochSecond() / 60;
 
-        // Retrieve Vote Counts of every task belonging to the current project
-        List<TaskVoteCount> votes = voteRepository.countByProjectIdGroupByTaskId(projectId);
+        // "uri=<path>" followed by the parameters in a stable order
+        StringBuilder listing = new StringBuilder(webRequest.getDescription(false));
+        new TreeMap<>(webRequest.getParameterMap()).forEach((name, values) ->
+                listing.append('&').append(name).append('=').append(String.join(",", values)));
 
-        Map<Long, Long> taskVotesMap = votes.stream()
-                .collect(Collectors.toMap(TaskVoteCount::getTaskId, TaskVoteCount::getVoteCount));
+        return projectVersionTracker.getBootId() + "-l" + projectVersionTracker.getListingVersion() +
+                "-u" + (currentUser == null ? 0 : currentUser.getId()) + "-t" + minute +
+                "-q" + DigestUtils.md5DigestAsHex(listing.toString().getBytes(StandardCharsets.UTF_8)).substring(0, 12);
+    }
 
-        // Retrieve project creator details
-        User creator = userRepository.findById(project.getCreatedBy())
-                .orElseThrow(() -> new ResourceNotFoundException("User", "id", project.getCreatedBy()));
+    public SseEmitter streamVoteCounts(Long projectId) {
+        // Fails with 404 for an unknown project
+        projectTemplateCache.get(projectId);
 
-        // Retrieve vote done by logged in user
-        Vote userVote = null;
+        return voteStreamService.subscribe(projectId);
+    }
+
+    // Not transactional: the vote lookup and a due tally refresh each hold a primary connection only for their query
+    public ProjectResponse getProjectById(Long projectId, UserPrincipal currentUser) {
+        ProjectTemplate template = projectTemplateCache.get(projectId);
+
+        // Retrieve the task voted for by logged in user; always read, the vote may have been cast on another node
+        Long userVote = null;
         if(currentUser != null) {
-            userVote = voteRepository.findByUserIdAndProjectId(currentUser.getId(), projectId);
+            userVote = voteRepository.findTaskIdByUserIdAndProjectId(currentUser.getId(), projectId);
         }
 
-        return ModelMapper.mapProjectToProjectResponse(project, taskVotesMap,
-                creator, userVote != null ? userVote.getTask().getId(): null);
+        return renderProject(template, userVote);
     }
 
     public ProjectResponse castVoteAndGetUpdatedProject(Long projectId, VoteRequest voteRequest, UserPrincipal currentUser) {
-        Project project = projectRepository.findById(projectId)
-                .orElseThrow(() -> new ResourceNotFoundException("Project", "id", projectId));
+        // Validated against the cached project, normally without any read
+        ProjectTemplate template = projectTemplateCache.get(projectId);
 
-        if(project.getExpirationDateTime().isBefore(Instant.now())) {
+        if(template.getProject().getExpirationDateTime().isBefore(Instant.now())) {
             throw new BadRequestException("Sorry! This Project has already expired");
         }
 
-        User user = userRepository.getOne(currentUser.getId());
-
-        Task selectedTask = project.getTasks().stream()
-                .filter(task -> task.getId().equals(voteRequest.getTaskId()))
-                .findFirst()
-                .orElseThrow(() -> new ResourceNotFoundException("Task", "id", voteRequest.getTaskId()));
+        if (!template.hasTask(voteRequest.getTaskId())) {
+            throw new ResourceNotFoundException("Task", "id", voteRequest.getTaskId());
+        }
 
-        Vote vote = new Vote();
-        vote.setProject(project);
-        vote.setUser(user);
-        vote.setTask(selectedTask);
+        // Repeat votes are turned away here instead of going through the writer
+        if (voteMembershipFilter.hasVoted(projectId, currentUser.getId())) {
+            throw new BadRequestException("Sorry! You have already cast your vote in this project");
+        }
 
+        // Group-committed together with concurrent votes, see VoteBatchWriter
+        boolean stored;
         try {
-            vote = voteRepository.save(vote);
-        } catch (DataIntegrityViolationException ex) {
+            stored = voteBatchWriter.submit(projectId, voteRequest.getTaskId(), currentUser.getId())
+                    .get(voteTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException ex) {
+            throw ex.getCause() instanceof RuntimeException
+                    ? (RuntimeException) ex.getCause() : new AppException("Could not store vote", ex.getCause());
+        } catch (TimeoutException ex) {
+            // The vote may still be stored once the writer catches up
+            logger.warn("Vote of user {} in project {} not stored within {} ms", currentUser.getId(), projectId, voteTimeoutMs);
+            throw new ServiceUnavailableException("Your vote could not be confirmed in time, please check again shortly");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Your vote could not be confirmed, please check again shortly");
+        }
+
+        if (!stored) {
             logger.info("User {} has already voted in Project {}", currentUser.getId(), projectId);
             throw new BadRequestException("Sorry! You have already cast your vote in this project");
         }
 
-        //-- Vote Saved, Return the updated Project Response now --
-
-        // Retrieve Vote Counts of every task belonging to the current project
-        List<TaskVoteCount> votes = voteRepository.countByProjectIdGroupByTaskId(projectId);
+        voteMembershipFilter.recordVote(projectId, currentUser.getId());
+        eventPublisher.publishEvent(new VoteCastEvent(projectId, voteRequest.getTaskId()));
 
-        Map<Long, Long> taskVotesMap = votes.stream()
-                .collect(Collectors.toMap(TaskVoteCount::getTaskId, TaskVoteCount::getVoteCount));
-
-        // Retrieve project creator details
-        User creator = userRepository.findById(project.getCreatedBy())
-                .orElseThrow(() -> new ResourceNotFoundException("User", "id", project.getCreatedBy()));
-
-        return ModelMapper.mapProjectToProjectResponse(project, taskVotesMap, creator, vote.getTask().getId());
+        //-- Vote Saved, Return the updated Project Response now, its counts already include this vote --
+        return renderProject(template, voteRequest.getTaskId());
     }
 
     private void validatePageNumberAndSize(int page, int size) {
@@ -236,46 +372,47 @@ public class ProjectService {
         }
     }
 
-    private Map<Long, Long> getTaskVoteCountMap(List<Long> projectIds) {
-        // Retrieve Vote Counts of every Task belonging to the given projectIds
-        List<TaskVoteCount> votes = voteRepository.countByProjectIdInGroupByTaskId(projectIds);
+    private PagedResponse<ProjectResponse> toCursorPage(List<ProjectSummary> projects, UserPrincipal currentUser, int size) {
+        boolean last = projects.size() <= size;
+        if (!last) {
+            projects = projects.subList(0, size);
+        }
+
+        if (projects.isEmpty()) {
+            return new PagedResponse<>(Collections.emptyList(), size, true, null);
+        }
 
-        Map<Long, Long> taskVotesMap = votes.stream()
-                .collect(Collectors.toMap(TaskVoteCount::getTaskId, TaskVoteCount::getVoteCount));
+        ProjectSummary lastProject = projects.get(projects.size() - 1);
+        String nextCursor = last ? null : new PageCursor(lastProject.getCreatedAt(), lastProject.getId()).encode();
 
-        return taskVotesMap;
+        return new PagedResponse<>(mapProjectSummaries(projects, currentUser), size, last, nextCursor);
     }
 
-    private Map<Long, Long> getProjectUserVoteMap(UserPrincipal currentUser, List<Long> projectIds) {
-        // Retrieve Votes done by the logged in user to the given projectIds
-        Map<Long, Long> projectUserVoteMap = null;
-        if(currentUser != null) {
-            List<Vote> userVotes = voteRepository.findByUserIdAndProjectIdIn(currentUser.getId(), projectIds);
+    private ProjectResponse renderProject(ProjectTemplate template, Long userVote) {
+        Map<Long, Long> taskVotesMap = voteTallyEngine.getTaskVoteCounts(template.getProject().getId());
 
-            projectUserVoteMap = userVotes.stream()
-                    .collect(Collectors.toMap(vote -> vote.getProject().getId(), vote -> vote.getTask().getId()));
-        }
-        return projectUserVoteMap;
+        ProjectResponse projectResponse = ModelMapper.mapProjectSummaryToProjectResponse(template.getProject(),
+                template.getTasks(), taskVotesMap);
+        projectResponse.setSelectedTasks(userVote);
+        return projectResponse;
     }
 
-    Map<Long, User> getProjectCreatorMap(List<Project> projects) {
-        // Get Project Creator details of the given list of projects
-        List<Long> creatorIds = projects.stream()
-                .map(Project::getCreatedBy)
-                .distinct()
+    private List<ProjectResponse> mapProjectSummaries(List<ProjectSummary> projects, UserPrincipal currentUser) {
+        // Retrieve Tasks and the logged in user's votes of every given project in one query
+        List<Long> projectIds = projects.stream()
+                .map(ProjectSummary::getId)
                 .collect(Collectors.toList());
 
-        List<User> creators = userRepository.findByIdIn(creatorIds);
-        Map<Long, User> creatorMap = creators.stream()
-                .collect(Collectors.toMap(User::getId, Function.identity()));
+        Map<Long, Long> taskVotesMap = voteTallyEngine.getTaskVoteCounts(projectIds);
 
-        return creatorMap;
-    }
-    
-    
+        Map<Long, List<TaskSummary>> projectTasksMap = taskRepository
+                .findSummariesByProjectIdIn(projectIds, currentUser == null ? null : currentUser.getId())
+                .stream()
+                .collect(Collectors.groupingBy(TaskSummary::getProjectId));
 
-    
-    
-
-    
+        return projects.stream()
+                .map(project -> ModelMapper.mapProjectSummaryToProjectResponse(project,
+                        projectTasksMap.getOrDefault(project.getId(), Collections.emptyList()), taskVotesMap))
+                .collect(Collectors.toList());
+    }
 }
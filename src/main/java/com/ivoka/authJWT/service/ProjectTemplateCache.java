@@ -0,0 +1,93 @@
+package com.ivoka.authJWT.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ivoka.authJWT.exception.ResourceNotFoundException;
+import com.ivoka.authJWT.model.ProjectSummary;
+import com.ivoka.authJWT.model.ProjectTaskRow;
+import com.ivoka.authJWT.model.ProjectTemplate;
+import com.ivoka.authJWT.model.TaskSummary;
+import com.ivoka.authJWT.repository.TaskRepository;
+import com.ivoka.authJWT.security.CustomUserDetailsService;
+import com.ivoka.authJWT.security.UserPrincipal;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Caches the user-independent part of a project response. Projects and tasks never change once created, so
+ * entries are never invalidated; vote counts, the expired flag and the user's own vote are not part of the
+ * template and are applied on every render.
+ */
+@Service
+public class ProjectTemplateCache {
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private CustomUserDetailsService customUserDetailsService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.projectCacheMaxSize:10000}")
+    private long maxSize;
+
+    @Value("${app.projectCacheIdleSeconds:3600}")
+    private long idleSeconds;
+
+    private Cache<Long, ProjectTemplate> templates;
+
+    @PostConstruct
+    void init() {
+        templates = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(Duration.ofSeconds(idleSeconds))
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, templates, "projectTemplates");
+    }
+
+    public ProjectTemplate get(Long projectId) {
+        return templates.get(projectId, this::load);
+    }
+
+    private ProjectTemplate load(Long projectId) {
+        // The project and its tasks in one indexed read, no entity is loaded
+        List<ProjectTaskRow> rows = taskRepository.findRowsByProjectId(projectId);
+
+        if (rows.isEmpty()) {
+            throw new ResourceNotFoundException("Project", "id", projectId);
+        }
+
+        ProjectTaskRow project = rows.get(0);
+
+        // Project creator details from the user cache
+        UserPrincipal creator;
+        try {
+            creator = (UserPrincipal) customUserDetailsService.loadUserById(project.getCreatedBy());
+        } catch (UsernameNotFoundException ex) {
+            throw new ResourceNotFoundException("User", "id", project.getCreatedBy());
+        }
+
+        ProjectSummary projectSummary = new ProjectSummary(project.getProjectId(), project.getProjectName(),
+                project.getCreatedAt(), project.getExpirationDateTime(), creator.getId(), creator.getUsername(), creator.getName());
+
+        List<TaskSummary> tasks = rows.stream()
+                .map(row -> new TaskSummary(projectId, row.getTaskId(), row.getTaskText(), null))
+                .collect(Collectors.toList());
+
+        return new ProjectTemplate(projectSummary, Collections.unmodifiableList(tasks));
+    }
+}
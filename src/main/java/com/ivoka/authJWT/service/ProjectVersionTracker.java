@@ -0,0 +1,56 @@
+package com.ivoka.authJWT.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Versions for conditional GETs. Every change to a project (creation, a vote, a repaired count) takes the next
+ * value of a single global sequence; the project's version is the value of its latest change and the listing
+ * version is the sequence itself, since any change may alter some listing.
+ * <p>
+ * Only recently used projects are tracked. A project that is not tracked is given the current global version,
+ * which is never lower than any version it had before, so a forgotten project can cost a full response but
+ * never a wrong 304. Versions restart with the process, hence the boot id in every tag.
+ */
+@Service
+public class ProjectVersionTracker {
+
+    private final String bootId = UUID.randomUUID().toString().substring(0, 8);
+
+    private final AtomicLong globalVersion = new AtomicLong();
+
+    @Value("${app.projectVersionMaxSize:100000}")
+    private long maxSize;
+
+    private Cache<Long, Long> projectVersions;
+
+    @PostConstruct
+    void init() {
+        projectVersions = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .build();
+    }
+
+    // Call only once the change is visible to readers, otherwise a tag could be paired with the old state
+    public void projectChanged(Long projectId) {
+        projectVersions.put(projectId, globalVersion.incrementAndGet());
+    }
+
+    public long getProjectVersion(Long projectId) {
+        return projectVersions.get(projectId, key -> globalVersion.get());
+    }
+
+    public long getListingVersion() {
+        return globalVersion.get();
+    }
+
+    public String getBootId() {
+        return bootId;
+    }
+}
@@ -0,0 +1,50 @@
+package com.ivoka.authJWT.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ivoka.authJWT.exception.TooManyRequestsException;
+import com.ivoka.authJWT.util.TokenBucket;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-client, per-endpoint token buckets for unauthenticated endpoints. Clients are told apart by remote
+ * address, so behind a proxy server.use-forward-headers must be enabled for this to see the real client.
+ */
+@Service
+public class RateLimiter {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.rateLimitMaxClients:100000}")
+    private long maxClients;
+
+    private Cache<String, TokenBucket> buckets;
+
+    @PostConstruct
+    void init() {
+        // An idle bucket refills within seconds, so forgetting it after a minute changes nothing for the client
+        buckets = Caffeine.newBuilder()
+                .maximumSize(maxClients)
+                .expireAfterAccess(1, TimeUnit.MINUTES)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, buckets, "rateLimitBuckets");
+    }
+
+    public void acquire(String endpoint, String client, double permitsPerSecond, int burst) {
+        TokenBucket bucket = buckets.get(endpoint + '|' + client, key -> new TokenBucket(permitsPerSecond, burst));
+        if (!bucket.tryAcquire()) {
+            meterRegistry.counter("http.rate_limited", "endpoint", endpoint).increment();
+            throw new TooManyRequestsException("Too many requests, please try again shortly");
+        }
+    }
+}
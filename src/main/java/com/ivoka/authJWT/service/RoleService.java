@@ -0,0 +1,37 @@
+package com.ivoka.authJWT.service;
+
+import com.ivoka.authJWT.exception.AppException;
+import com.ivoka.authJWT.model.Role;
+import com.ivoka.authJWT.model.RoleName;
+import com.ivoka.authJWT.repository.RoleRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Roles never change at runtime, so they are read once at startup and handed out as detached references.
+ * Assigning one to a new user only writes the user_roles row.
+ */
+@Service
+public class RoleService {
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    private final Map<RoleName, Role> roles = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadRoles() {
+        roleRepository.findAll().forEach(role -> roles.put(role.getName(), role));
+    }
+
+    public Role getRole(RoleName roleName) {
+        // Roles inserted after startup are picked up on first use
+        return roles.computeIfAbsent(roleName, name -> roleRepository.findByName(name)
+                .orElseThrow(() -> new AppException("User Role not set.")));
+    }
+}
@@ -0,0 +1,158 @@
+package com.ivoka.authJWT.service;
+
+import com.ivoka.authJWT.model.UserIdentity;
+import com.ivoka.authJWT.repository.UserRepository;
+import com.ivoka.authJWT.util.BloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Answers the signup form's availability checks mostly from memory, using Bloom filters of all taken usernames
+ * and emails. A name the filter has never seen is reported available without a query; a possible match is
+ * confirmed with the usual existence query. Users registered through another instance only show up after the
+ * next reload, app.userFilterReloadIntervalMs, so the users unique constraints stay authoritative at signup.
+ */
+@Service
+public class UserIdentityFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserIdentityFilter.class);
+
+    private static final int LOAD_PAGE_SIZE = 10000;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.userFilterExpectedUsers:100000}")
+    private int expectedUsers;
+
+    @Value("${app.userFilterFalsePositiveProbability:0.01}")
+    private double falsePositiveProbability;
+
+    // Null until the first load completes; checks go to the database until then
+    private volatile IdentityFilters current;
+
+    // Also receives new users while a reload is running, so they are not lost when it is swapped in
+    private volatile IdentityFilters loading;
+
+    private Counter available;
+
+    private Counter falsePositives;
+
+    private Counter taken;
+
+    private static final class IdentityFilters {
+        private final BloomFilter usernames;
+        private final BloomFilter emails;
+
+        private IdentityFilters(int expectedInsertions, double falsePositiveProbability) {
+            usernames = new BloomFilter(expectedInsertions, falsePositiveProbability);
+            emails = new BloomFilter(expectedInsertions, falsePositiveProbability);
+        }
+
+        private void put(String username, String email) {
+            usernames.put(normalize(username));
+            emails.put(normalize(email));
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        // false_positive / (taken + false_positive) is the observed false positive rate
+        available = meterRegistry.counter("users.availability.precheck", "result", "available");
+        falsePositives = meterRegistry.counter("users.availability.precheck", "result", "false_positive");
+        taken = meterRegistry.counter("users.availability.precheck", "result", "taken");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.userFilterReloadIntervalMs:600000}",
+            initialDelayString = "${app.userFilterReloadIntervalMs:600000}")
+    public synchronized void reload() {
+        IdentityFilters filters = new IdentityFilters(
+                (int) Math.max(expectedUsers, userRepository.count() * 2), falsePositiveProbability);
+        loading = filters;
+
+        long afterId = 0;
+        List<UserIdentity> page;
+        do {
+            page = userRepository.findIdentitiesAfter(afterId, PageRequest.of(0, LOAD_PAGE_SIZE));
+            page.forEach(user -> filters.put(user.getUsername(), user.getEmail()));
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == LOAD_PAGE_SIZE);
+
+        current = filters;
+        loading = null;
+
+        if (filters.usernames.isSaturated() || filters.emails.isSaturated()) {
+            logger.warn("User identity filter is over capacity, raise app.userFilterExpectedUsers");
+        }
+    }
+
+    // Call after the user is committed
+    public void recordUser(String username, String email) {
+        // loading before current: a reload that finishes in between has already swapped its filters in, while one
+        // that starts in between reads the committed user itself
+        IdentityFilters reloading = loading;
+        IdentityFilters filters = current;
+        if (reloading != null) {
+            reloading.put(username, email);
+        }
+        if (filters != null && filters != reloading) {
+            filters.put(username, email);
+        }
+    }
+
+    public boolean isUsernameTaken(String username) {
+        IdentityFilters filters = current;
+        return confirm(filters == null || filters.usernames.mightContain(normalize(username)),
+                () -> userRepository.existsByUsername(username));
+    }
+
+    public boolean isEmailTaken(String email) {
+        IdentityFilters filters = current;
+        return confirm(filters == null || filters.emails.mightContain(normalize(email)),
+                () -> userRepository.existsByEmail(email));
+    }
+
+    private boolean confirm(boolean mightBeTaken, BooleanSupplier exists) {
+        if (!mightBeTaken) {
+            available.increment();
+            return false;
+        }
+
+        if (exists.getAsBoolean()) {
+            taken.increment();
+            return true;
+        }
+
+        falsePositives.increment();
+        return false;
+    }
+
+    // MySQL compares these case-insensitively and ignores trailing spaces, the filter must not be stricter
+    private static String normalize(String value) {
+        int end = value.length();
+        while (end > 0 && value.charAt(end - 1) == ' ') {
+            end--;
+        }
+        return value.substring(0, end).toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,86 @@
+package com.ivoka.authJWT.service;
+
+import com.ivoka.authJWT.config.ReplicaRead;
+import com.ivoka.authJWT.exception.BadRequestException;
+import com.ivoka.authJWT.exception.ResourceNotFoundException;
+import com.ivoka.authJWT.model.RoleName;
+import com.ivoka.authJWT.model.User;
+import com.ivoka.authJWT.payload.UserProfile;
+import com.ivoka.authJWT.repository.UserRepository;
+import com.ivoka.authJWT.repository.UserStatsRepository;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+import java.util.Locale;
+
+@Service
+public class UserService {
+
+    public static final String USERNAME_TAKEN = "Username is already taken!";
+    public static final String EMAIL_TAKEN = "Email Address already in use!";
+
+    @Autowired
+    private UserStatsRepository userStatsRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleService roleService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // One insert into users and one into user_roles; a taken username or email is reported by the unique constraints
+    public User registerUser(User user) {
+        user.setRoles(Collections.singleton(roleService.getRole(RoleName.ROLE_USER)));
+
+        try {
+            return userRepository.save(user);
+        } catch (DataIntegrityViolationException ex) {
+            throw new BadRequestException(conflictMessage(user, ex), ex);
+        }
+    }
+
+    @ReplicaRead
+    @Transactional(readOnly = true)
+    public UserProfile getUserProfile(String username) {
+        // Counts come from the user_stats read model, see UserStatsService
+        return userStatsRepository.findProfileByUsername(username)
+                .orElseThrow(() -> new ResourceNotFoundException("User", "username", username));
+    }
+
+    private String conflictMessage(User user, DataIntegrityViolationException ex) {
+        String violation = ex.getMostSpecificCause().getMessage();
+        if (ex.getCause() instanceof ConstraintViolationException) {
+            violation = ((ConstraintViolationException) ex.getCause()).getConstraintName() + " " + violation;
+        }
+        violation = String.valueOf(violation).toLowerCase(Locale.ROOT);
+
+        if (violation.contains(User.USERNAME_CONSTRAINT)) {
+            return USERNAME_TAKEN;
+        }
+        if (violation.contains(User.EMAIL_CONSTRAINT)) {
+            return EMAIL_TAKEN;
+        }
+
+        // Unique keys still under generated names, see UserUniqueKeyMigration. A read-write transaction reads from the
+        // primary, where the row the insert collided with is sure to be
+        String message = new TransactionTemplate(transactionManager).execute(status -> {
+            if (userRepository.existsByUsername(user.getUsername())) {
+                return USERNAME_TAKEN;
+            }
+            return userRepository.existsByEmail(user.getEmail()) ? EMAIL_TAKEN : null;
+        });
+        if (message == null) {
+            throw ex;
+        }
+        return message;
+    }
+}
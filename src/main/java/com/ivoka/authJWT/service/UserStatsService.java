@@ -0,0 +1,125 @@
+package com.ivoka.authJWT.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Maintains the user_stats read model. Increments are single-statement upserts that run in the caller's
+ * transaction, so they commit or roll back together with the project or vote they count.
+ */
+@Service
+public class UserStatsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserStatsService.class);
+
+    private static final String ADD_PROJECT = "INSERT INTO user_stats (user_id, project_count, vote_count, last_activity_at) " +
+            "VALUES (?, 1, 0, ?) ON DUPLICATE KEY UPDATE project_count = project_count + 1, last_activity_at = VALUES(last_activity_at)";
+
+    private static final String ADD_VOTES = "INSERT INTO user_stats (user_id, project_count, vote_count, last_activity_at) " +
+            "VALUES (?, 0, ?, ?) ON DUPLICATE KEY UPDATE vote_count = vote_count + VALUES(vote_count), last_activity_at = VALUES(last_activity_at)";
+
+    // Recounts a page of users next to their stored row; one statement, so both come from the same snapshot.
+    // Users without activity count from signup
+    private static final String RECOUNT_PAGE = "SELECT u.id, " +
+            "(SELECT COUNT(*) FROM projects p WHERE p.created_by = u.id), " +
+            "(SELECT COUNT(*) FROM votes v WHERE v.user_id = u.id), " +
+            "GREATEST(COALESCE((SELECT MAX(p.created_at) FROM projects p WHERE p.created_by = u.id), u.created_at), " +
+            "COALESCE((SELECT MAX(v.created_at) FROM votes v WHERE v.user_id = u.id), u.created_at)), " +
+            "s.user_id, s.project_count, s.vote_count " +
+            "FROM users u LEFT JOIN user_stats s ON s.user_id = u.id " +
+            "WHERE u.id > ? ORDER BY u.id LIMIT ?";
+
+    // Adds the difference between the recount and the row as it was read, so increments committed since are kept
+    private static final String CORRECT = "INSERT INTO user_stats (user_id, project_count, vote_count, last_activity_at) " +
+            "VALUES (?, ?, ?, ?) ON DUPLICATE KEY UPDATE project_count = project_count + ?, vote_count = vote_count + ?, " +
+            "last_activity_at = GREATEST(last_activity_at, VALUES(last_activity_at))";
+
+    private static final int REBUILD_PAGE_SIZE = 1000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    public void recordProjectCreated(Long userId, Instant createdAt) {
+        jdbcTemplate.update(ADD_PROJECT, userId, Timestamp.from(createdAt));
+    }
+
+    // Called by VoteBatchWriter with the users whose votes the current batch stored. One row per user, in id order,
+    // so concurrent batches lock the rows in the same order
+    public void recordVotes(List<Long> userIds, Instant castAt) {
+        Map<Long, Integer> votesByUser = new TreeMap<>();
+        userIds.forEach(userId -> votesByUser.merge(userId, 1, Integer::sum));
+
+        List<Map.Entry<Long, Integer>> rows = new ArrayList<>(votesByUser.entrySet());
+        Timestamp timestamp = Timestamp.from(castAt);
+        jdbcTemplate.batchUpdate(ADD_VOTES, rows, rows.size(), (ps, row) -> {
+            ps.setLong(1, row.getKey());
+            ps.setInt(2, row.getValue());
+            ps.setTimestamp(3, timestamp);
+        });
+    }
+
+    // Backfills the table, e.g. after deploying it against existing data. Runs a page of users per transaction
+    // alongside normal traffic: each row gets the recount plus whatever was added to it after the page was read
+    public int rebuild() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        int rows = 0;
+        RebuiltPage page = new RebuiltPage(0L, 0);
+        while (page.lastUserId != null) {
+            Long afterId = page.lastUserId;
+            page = transactionTemplate.execute(status -> rebuildPage(afterId));
+            rows += page.rowsWritten;
+        }
+        logger.info("Rebuilt user statistics, {} rows written", rows);
+        return rows;
+    }
+
+    private RebuiltPage rebuildPage(long afterId) {
+        List<Long> userIds = new ArrayList<>();
+        List<Object[]> corrections = new ArrayList<>();
+        jdbcTemplate.query(RECOUNT_PAGE, rs -> {
+            long userId = rs.getLong(1);
+            long projectCount = rs.getLong(2);
+            long voteCount = rs.getLong(3);
+            Timestamp lastActivityAt = rs.getTimestamp(4);
+            boolean stored = rs.getObject(5) != null;
+            long projectDelta = projectCount - rs.getLong(6);
+            long voteDelta = voteCount - rs.getLong(7);
+
+            userIds.add(userId);
+            if (!stored || projectDelta != 0 || voteDelta != 0) {
+                corrections.add(new Object[]{userId, projectCount, voteCount, lastActivityAt, projectDelta, voteDelta});
+            }
+        }, afterId, REBUILD_PAGE_SIZE);
+
+        if (!corrections.isEmpty()) {
+            jdbcTemplate.batchUpdate(CORRECT, corrections);
+        }
+        return new RebuiltPage(userIds.isEmpty() ? null : userIds.get(userIds.size() - 1), corrections.size());
+    }
+
+    private static final class RebuiltPage {
+        // Null once there are no users left
+        private final Long lastUserId;
+        private final int rowsWritten;
+
+        private RebuiltPage(Long lastUserId, int rowsWritten) {
+            this.lastUserId = lastUserId;
+            this.rowsWritten = rowsWritten;
+        }
+    }
+}
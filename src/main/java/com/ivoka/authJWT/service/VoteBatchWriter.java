@@ -0,0 +1,269 @@
+package com.ivoka.authJWT.service;
+
+import com.ivoka.authJWT.exception.ServiceUnavailableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Group-commits votes: concurrent callers enqueue their vote and a single writer thread inserts whatever has
+ * accumulated as one JDBC batch in one transaction, every app.voteBatchMaxDelayMs or app.voteBatchSize votes.
+ * Each caller's future completes with true when its vote was stored and false when the user had already voted
+ * in the project. Votes are only ever inserted by this writer.
+ */
+@Service
+public class VoteBatchWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(VoteBatchWriter.class);
+
+    private static final String FIND_VOTED = "SELECT project_id, user_id FROM votes WHERE project_id IN (%s) AND user_id IN (%s)";
+
+    // Skips the row instead of failing the batch when the user already voted in the project, see the votes unique constraint
+    private static final String INSERT_VOTE = "INSERT INTO votes (created_at, updated_at, project_id, task_id, user_id) " +
+            "SELECT ?, ?, ?, ?, ? FROM DUAL WHERE NOT EXISTS (SELECT 1 FROM votes WHERE project_id = ? AND user_id = ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private VoteTallyEngine voteTallyEngine;
+
+    @Autowired
+    private UserStatsService userStatsService;
+
+    @Value("${app.voteBatchSize:100}")
+    private int batchSize;
+
+    @Value("${app.voteBatchMaxDelayMs:5}")
+    private long maxDelayMs;
+
+    @Value("${app.voteQueueCapacity:10000}")
+    private int queueCapacity;
+
+    private BlockingQueue<PendingVote> queue;
+
+    private TransactionTemplate transactionTemplate;
+
+    private Thread writerThread;
+
+    private volatile boolean running = true;
+
+    private static final class PendingVote {
+        private final Long projectId;
+        private final Long taskId;
+        private final Long userId;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        private PendingVote(Long projectId, Long taskId, Long userId) {
+            this.projectId = projectId;
+            this.taskId = taskId;
+            this.userId = userId;
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+
+        writerThread = new Thread(this::run, "vote-batch-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        running = false;
+        writerThread.interrupt();
+        writerThread.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    public CompletableFuture<Boolean> submit(Long projectId, Long taskId, Long userId) {
+        if (!running || !writerThread.isAlive()) {
+            logger.error("Vote writer is not running, rejecting vote of user {} in project {}", userId, projectId);
+            throw new ServiceUnavailableException("Votes cannot be stored right now, please try again shortly");
+        }
+
+        PendingVote vote = new PendingVote(projectId, taskId, userId);
+        if (!queue.offer(vote)) {
+            logger.warn("Vote queue is full, rejecting vote of user {} in project {}", userId, projectId);
+            throw new ServiceUnavailableException("Server is busy, please try again shortly");
+        }
+        return vote.result;
+    }
+
+    private void run() {
+        List<PendingVote> batch = new ArrayList<>(batchSize);
+        try {
+            writeBatches(batch);
+        } catch (Throwable ex) {
+            logger.error("Vote writer stopped, votes are rejected from now on", ex);
+            throw ex;
+        } finally {
+            running = false;
+            // Nobody is left to write these
+            queue.drainTo(batch);
+            ServiceUnavailableException stopped = new ServiceUnavailableException("Votes cannot be stored right now, please try again shortly");
+            batch.forEach(vote -> vote.result.completeExceptionally(stopped));
+        }
+    }
+
+    private void writeBatches(List<PendingVote> batch) {
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingVote first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // Give concurrent callers a few milliseconds to join the batch
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+                while (batch.size() < batchSize) {
+                    PendingVote next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException ex) {
+                // Shutdown; drain what is left without waiting
+                queue.drainTo(batch, batchSize - batch.size());
+            }
+
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<PendingVote> batch) {
+        boolean[] stored;
+        try {
+            stored = transactionTemplate.execute(status -> insert(batch));
+        } catch (RuntimeException ex) {
+            // One bad row (e.g. a task deleted meanwhile) fails the whole batch; retry row by row to isolate it
+            logger.warn("Vote batch of {} failed, retrying votes individually", batch.size(), ex);
+            batch.forEach(vote -> write(vote));
+            return;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            complete(batch.get(i), stored[i]);
+        }
+    }
+
+    private void write(PendingVote vote) {
+        try {
+            boolean[] stored = transactionTemplate.execute(status -> insert(Collections.singletonList(vote)));
+            complete(vote, stored[0]);
+        } catch (DataIntegrityViolationException ex) {
+            // Lost a race with a vote inserted outside this writer
+            complete(vote, false);
+        } catch (RuntimeException ex) {
+            vote.result.completeExceptionally(ex);
+        }
+    }
+
+    private boolean[] insert(List<PendingVote> votes) {
+        boolean[] stored = new boolean[votes.size()];
+
+        // Drivers that rewrite batches (rewriteBatchedStatements) report Statement.SUCCESS_NO_INFO instead of row
+        // counts, so repeat votes are found up front: against the stored votes and within the batch itself
+        Set<List<Long>> voted = findVoted(votes);
+        List<Integer> inserted = new ArrayList<>();
+        for (int i = 0; i < votes.size(); i++) {
+            if (voted.add(Arrays.asList(votes.get(i).projectId, votes.get(i).userId))) {
+                inserted.add(i);
+            }
+        }
+
+        if (inserted.isEmpty()) {
+            return stored;
+        }
+        // Same key order in every batch, so two batches never wait on each other's rows in opposite orders
+        inserted.sort(Comparator.<Integer, Long>comparing(index -> votes.get(index).projectId)
+                .thenComparing(index -> votes.get(index).userId));
+
+        Instant castAt = Instant.now();
+        Timestamp now = Timestamp.from(castAt);
+        int[] updateCounts = jdbcTemplate.batchUpdate(INSERT_VOTE, inserted, inserted.size(), (ps, index) -> {
+            PendingVote vote = votes.get(index);
+            ps.setTimestamp(1, now);
+            ps.setTimestamp(2, now);
+            ps.setLong(3, vote.projectId);
+            ps.setLong(4, vote.taskId);
+            ps.setLong(5, vote.userId);
+            ps.setLong(6, vote.projectId);
+            ps.setLong(7, vote.userId);
+        })[0];
+
+        // Same transaction as the votes, so the user totals only count votes that are stored; a user with several
+        // votes in the batch is one row there
+        List<Long> voterIds = new ArrayList<>();
+        for (int i = 0; i < inserted.size(); i++) {
+            // No row count means the insert ran; the vote was checked above not to exist yet
+            if (updateCounts[i] > 0 || updateCounts[i] == Statement.SUCCESS_NO_INFO) {
+                stored[inserted.get(i)] = true;
+                voterIds.add(votes.get(inserted.get(i)).userId);
+            }
+        }
+        if (!voterIds.isEmpty()) {
+            userStatsService.recordVotes(voterIds, castAt);
+        }
+
+        return stored;
+    }
+
+    private Set<List<Long>> findVoted(List<PendingVote> votes) {
+        Set<Long> projectIds = votes.stream().map(vote -> vote.projectId).collect(Collectors.toSet());
+        Set<Long> userIds = votes.stream().map(vote -> vote.userId).collect(Collectors.toSet());
+
+        List<Object> params = new ArrayList<>(projectIds);
+        params.addAll(userIds);
+        String sql = String.format(FIND_VOTED, placeholders(projectIds.size()), placeholders(userIds.size()));
+
+        // May return pairs outside the batch, they are never looked up
+        return new HashSet<>(jdbcTemplate.query(sql, params.toArray(),
+                (rs, rowNum) -> Arrays.asList(rs.getLong("project_id"), rs.getLong("user_id"))));
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private void complete(PendingVote vote, boolean stored) {
+        // Only committed votes are counted
+        if (stored) {
+            try {
+                voteTallyEngine.recordVote(vote.projectId, vote.taskId);
+            } catch (RuntimeException ex) {
+                // The vote is stored; the reconciler brings the counter back in line
+                logger.error("Could not count vote of user {} in project {}", vote.userId, vote.projectId, ex);
+            }
+        }
+        vote.result.complete(stored);
+    }
+}
@@ -0,0 +1,20 @@
+package com.ivoka.authJWT.service;
+
+// Published once a vote is stored and counted
+public class VoteCastEvent {
+    private final Long projectId;
+    private final Long taskId;
+
+    public VoteCastEvent(Long projectId, Long taskId) {
+        this.projectId = projectId;
+        this.taskId = taskId;
+    }
+
+    public Long getProjectId() {
+        return projectId;
+    }
+
+    public Long getTaskId() {
+        return taskId;
+    }
+}
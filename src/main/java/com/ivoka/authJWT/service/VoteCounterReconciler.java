@@ -0,0 +1,93 @@
+package com.ivoka.authJWT.service;
+
+import com.ivoka.authJWT.model.TaskVoteCounterDrift;
+import com.ivoka.authJWT.repository.TaskVoteCounterRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Verifies the materialized task vote counters against the raw votes and repairs any drift.
+ * <p>
+ * Votes reach their counter only with a flush of the node that counted them, so a stored vote still on its way
+ * looks like drift as well. Only drift that stays the same for app.voteCounterReconcileSettleMs is repaired, and
+ * by the difference to the count read, which leaves any flush landing meanwhile intact.
+ */
+@Service
+public class VoteCounterReconciler {
+
+    private static final Logger logger = LoggerFactory.getLogger(VoteCounterReconciler.class);
+
+    @Autowired
+    private TaskVoteCounterRepository taskVoteCounterRepository;
+
+    @Autowired
+    private VoteTallyEngine voteTallyEngine;
+
+    @Value("${app.voteCounterReconcileSettleMs:10000}")
+    private long settleMs;
+
+    // Also runs on startup to backfill counters for tasks created before the counters table existed.
+    // Not transactional: both drift reads must see the votes and counters committed by then.
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.voteCounterReconcileIntervalMs:3600000}",
+            initialDelayString = "${app.voteCounterReconcileIntervalMs:3600000}")
+    public void reconcile() {
+        // Persist the in-memory tallies first so the stored counters can be compared with the votes
+        voteTallyEngine.flush();
+
+        int created = taskVoteCounterRepository.createMissingCounters();
+
+        List<TaskVoteCounterDrift> drifted = findSettledDrift();
+
+        int repaired = 0;
+        for (TaskVoteCounterDrift drift : drifted) {
+            // Skipped if a flush changed the counter since it was read; the next run looks at it again
+            if (taskVoteCounterRepository.addVotesIfUnchanged(drift.getTaskId(), drift.getStoredCount(),
+                    drift.getActualCount() - drift.getStoredCount()) > 0) {
+                voteTallyEngine.refreshSoon(drift.getProjectId());
+                repaired++;
+            }
+        }
+
+        if (created > 0 || repaired > 0) {
+            logger.warn("Vote counter reconciliation created {} and repaired {} counters", created, repaired);
+        }
+    }
+
+    private List<TaskVoteCounterDrift> findSettledDrift() {
+        Map<Long, TaskVoteCounterDrift> suspected = taskVoteCounterRepository.findDriftedCounters().stream()
+                .collect(Collectors.toMap(TaskVoteCounterDrift::getTaskId, Function.identity()));
+        if (suspected.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        try {
+            Thread.sleep(settleMs);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return Collections.emptyList();
+        }
+        voteTallyEngine.flush();
+
+        // Unchanged votes and counter: no vote of the task was pending at the first read, or it would have landed
+        return taskVoteCounterRepository.findDriftedCounters().stream()
+                .filter(drift -> {
+                    TaskVoteCounterDrift before = suspected.get(drift.getTaskId());
+                    return before != null && before.getStoredCount().equals(drift.getStoredCount())
+                            && before.getActualCount().equals(drift.getActualCount());
+                })
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,104 @@
+package com.ivoka.authJWT.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ivoka.authJWT.repository.VoteRepository;
+import com.ivoka.authJWT.util.BloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+
+/**
+ * Answers "has this user already voted in this project" mostly from memory. Each project gets a Bloom filter
+ * of its voters, seeded from the votes table on first use. A negative answer is definite for votes that went
+ * through this instance; a positive one is confirmed with an indexed existence query before rejecting, so a
+ * false positive costs one read and never a wrong rejection. The votes unique constraint remains the final
+ * safety net for votes this filter has not seen.
+ */
+@Service
+public class VoteMembershipFilter {
+
+    private static final int MIN_EXPECTED_VOTERS = 1024;
+
+    @Autowired
+    private VoteRepository voteRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.voteFilterMaxProjects:1000}")
+    private long maxProjects;
+
+    @Value("${app.voteFilterFalsePositiveProbability:0.01}")
+    private double falsePositiveProbability;
+
+    private Cache<Long, BloomFilter> filters;
+
+    private Counter rejections;
+
+    private Counter falsePositives;
+
+    private Counter negatives;
+
+    @PostConstruct
+    void init() {
+        filters = Caffeine.newBuilder()
+                .maximumSize(maxProjects)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, filters, "voteMembershipFilters");
+
+        // false_positive / (rejected + false_positive) is the observed false positive rate
+        rejections = meterRegistry.counter("votes.duplicate.precheck", "result", "rejected");
+        falsePositives = meterRegistry.counter("votes.duplicate.precheck", "result", "false_positive");
+        negatives = meterRegistry.counter("votes.duplicate.precheck", "result", "new_voter");
+    }
+
+    public boolean hasVoted(Long projectId, Long userId) {
+        if (!filter(projectId).mightContain(userId)) {
+            negatives.increment();
+            return false;
+        }
+
+        if (voteRepository.existsByUserIdAndProjectId(userId, projectId)) {
+            rejections.increment();
+            return true;
+        }
+
+        falsePositives.increment();
+        return false;
+    }
+
+    public void recordVote(Long projectId, Long userId) {
+        // Waits for a concurrent seed of the same project, whose read may have missed this vote.
+        // A saturated filter is dropped and rebuilt with room for the new voters on next use.
+        filters.asMap().computeIfPresent(projectId, (key, filter) -> {
+            filter.put(userId);
+            return filter.isSaturated() ? null : filter;
+        });
+    }
+
+    public long getRejectionCount() {
+        return (long) rejections.count();
+    }
+
+    public long getFalsePositiveCount() {
+        return (long) falsePositives.count();
+    }
+
+    private BloomFilter filter(Long projectId) {
+        return filters.get(projectId, key -> {
+            List<Long> voterIds = voteRepository.findUserIdsByProjectId(projectId);
+            BloomFilter filter = new BloomFilter(Math.max(MIN_EXPECTED_VOTERS, voterIds.size() * 2), falsePositiveProbability);
+            voterIds.forEach(filter::put);
+            return filter;
+        });
+    }
+}
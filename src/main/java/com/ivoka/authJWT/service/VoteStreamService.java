@@ -0,0 +1,215 @@
+package com.ivoka.authJWT.service;
+
+import com.ivoka.authJWT.exception.ServiceUnavailableException;
+import com.ivoka.authJWT.payload.VoteCountUpdate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes live vote counts to Server-Sent Events subscribers. Votes only mark their project as changed; a
+ * scheduled broadcast sends each changed project's new counts at most every app.voteStreamIntervalMs, however
+ * many votes arrived in between. Sending happens on a small pool, each subscriber with a bounded queue, so a
+ * subscriber that does not keep up is disconnected instead of holding back the others or piling up memory.
+ */
+@Service
+public class VoteStreamService {
+
+    private static final Logger logger = LoggerFactory.getLogger(VoteStreamService.class);
+
+    @Autowired
+    private VoteTallyEngine voteTallyEngine;
+
+    @Value("${app.voteStreamMaxSubscribers:10000}")
+    private int maxSubscribers;
+
+    @Value("${app.voteStreamBufferSize:16}")
+    private int bufferSize;
+
+    @Value("${app.voteStreamTimeoutMs:1800000}")
+    private long timeoutMs;
+
+    @Value("${app.voteStreamSenderThreads:4}")
+    private int senderThreads;
+
+    private final ConcurrentHashMap<Long, ProjectChannel> channels = new ConcurrentHashMap<>();
+
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    private ExecutorService senders;
+
+    private static final class ProjectChannel {
+        private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+        private final AtomicBoolean changed = new AtomicBoolean();
+        // Counts as of the previous broadcast, only touched by the broadcasting thread under the channel lock
+        private Map<Long, Long> lastCounts = Collections.emptyMap();
+    }
+
+    private final class Subscriber {
+        private final Long projectId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> buffer = new ArrayBlockingQueue<>(bufferSize);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        // Set when the buffer overflowed; the emitter is then completed by a sender, see drain
+        private volatile boolean dropped;
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        private Subscriber(Long projectId, SseEmitter emitter) {
+            this.projectId = projectId;
+            this.emitter = emitter;
+        }
+
+        private void offer(SseEmitter.SseEventBuilder event) {
+            if (closed.get()) {
+                return;
+            }
+            if (!buffer.offer(event)) {
+                logger.debug("Dropping slow vote stream subscriber of project {}", projectId);
+                dropped = true;
+                unsubscribe(this);
+            }
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                SseEmitter.SseEventBuilder event;
+                while (!closed.get() && (event = buffer.poll()) != null) {
+                    emitter.send(event);
+                }
+                // Not on the broadcasting thread: the emitter stays locked for as long as a send to the client blocks
+                if (dropped && completed.compareAndSet(false, true)) {
+                    buffer.clear();
+                    emitter.complete();
+                }
+            } catch (IOException | IllegalStateException ex) {
+                // Client went away
+                unsubscribe(this);
+            } finally {
+                draining.set(false);
+            }
+            // Work that arrived after the checks above but before draining was reset would otherwise sit there
+            if ((dropped && !completed.get()) || (!closed.get() && !buffer.isEmpty())) {
+                scheduleDrain();
+            }
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        senders = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "vote-stream-sender-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        channels.values().forEach(channel -> channel.subscribers.forEach(subscriber -> subscriber.emitter.complete()));
+        senders.shutdown();
+    }
+
+    public SseEmitter subscribe(Long projectId) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            throw new ServiceUnavailableException("Too many live subscribers, please poll instead");
+        }
+
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(projectId, emitter);
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(ex -> unsubscribe(subscriber));
+
+        // Joined before the snapshot is taken, so a vote cast in between still marks the channel as changed
+        ProjectChannel joined = channels.compute(projectId, (key, channel) -> {
+            ProjectChannel result = channel != null ? channel : new ProjectChannel();
+            result.subscribers.add(subscriber);
+            return result;
+        });
+
+        // The full picture first, deltas afterwards; the channel lock keeps an older delta from following it
+        synchronized (joined) {
+            Map<Long, Long> counts = voteTallyEngine.getTaskVoteCounts(projectId);
+            subscriber.offer(SseEmitter.event().name("counts").data(new VoteCountUpdate(projectId, counts, total(counts))));
+        }
+
+        return emitter;
+    }
+
+    @EventListener
+    public void onVoteCast(VoteCastEvent event) {
+        ProjectChannel channel = channels.get(event.getProjectId());
+        if (channel != null) {
+            channel.changed.set(true);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.voteStreamIntervalMs:250}")
+    public void broadcast() {
+        channels.forEach((projectId, channel) -> {
+            if (!channel.changed.compareAndSet(true, false)) {
+                return;
+            }
+
+            synchronized (channel) {
+                Map<Long, Long> counts = voteTallyEngine.getTaskVoteCounts(projectId);
+                Map<Long, Long> changedCounts = new HashMap<>();
+                counts.forEach((taskId, count) -> {
+                    if (!count.equals(channel.lastCounts.get(taskId))) {
+                        changedCounts.put(taskId, count);
+                    }
+                });
+                channel.lastCounts = counts;
+
+                if (changedCounts.isEmpty()) {
+                    return;
+                }
+
+                VoteCountUpdate update = new VoteCountUpdate(projectId, changedCounts, total(counts));
+                channel.subscribers.forEach(subscriber -> subscriber.offer(SseEmitter.event().name("delta").data(update)));
+            }
+        });
+    }
+
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        if (!subscriber.closed.compareAndSet(false, true)) {
+            return;
+        }
+        subscriberCount.decrementAndGet();
+        channels.computeIfPresent(subscriber.projectId, (key, channel) -> {
+            channel.subscribers.remove(subscriber);
+            return channel.subscribers.isEmpty() ? null : channel;
+        });
+    }
+
+    private static long total(Map<Long, Long> counts) {
+        return counts.values().stream().mapToLong(Long::longValue).sum();
+    }
+}
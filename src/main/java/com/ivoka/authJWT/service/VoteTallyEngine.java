@@ -0,0 +1,285 @@
+package com.ivoka.authJWT.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.ivoka.authJWT.config.ReadWriteRoutingDataSource;
+import com.ivoka.authJWT.model.TaskVoteCounter;
+import com.ivoka.authJWT.repository.TaskVoteCounterRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * In-process view of per-task vote counts. Each project's counters are seeded from task_vote_counters on first
+ * access and incremented on every successful vote without touching the database. A periodic write-behind persists
+ * the increments made since the previous flush.
+ * <p>
+ * Every node persists only its own increments and re-reads a project's counters once they are older than
+ * app.voteTallyRefreshIntervalMs, keeping the increments it has not flushed yet. Counts on several nodes therefore
+ * converge within the refresh plus the flush interval. Projects are held in a bounded cache; an evicted project
+ * has its pending increments persisted right away.
+ */
+@Service
+public class VoteTallyEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(VoteTallyEngine.class);
+
+    @Autowired
+    private TaskVoteCounterRepository taskVoteCounterRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ProjectVersionTracker projectVersionTracker;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.voteTallyMaxProjects:10000}")
+    private long maxProjects;
+
+    @Value("${app.voteTallyRefreshIntervalMs:30000}")
+    private long refreshIntervalMs;
+
+    private long refreshIntervalNanos;
+
+    private TransactionTemplate flushTransaction;
+
+    // Joins the caller's transaction, which already holds or will take a connection from the primary pool. Its
+    // rows must be current, so callers seed before any read that could open an older snapshot.
+    private TransactionTemplate seedTransaction;
+
+    // Own transaction and not read-only, so the counters come from the primary when a @ReplicaRead listing asks
+    private TransactionTemplate replicaSeedTransaction;
+
+    // projectId -> tallies of the project's tasks
+    private Cache<Long, ProjectTally> projects;
+
+    // Bumped by every flush; a seed that read the counters before a flush must not take them over
+    private volatile long flushGeneration;
+
+    private static final class ProjectTally {
+        private final Long projectId;
+        private final ConcurrentHashMap<Long, TaskTally> tasks = new ConcurrentHashMap<>();
+        // Only written under the engine monitor, once the counters were read without a flush in between
+        private volatile boolean seeded;
+        private volatile long seededAtNanos;
+
+        private ProjectTally(Long projectId) {
+            this.projectId = projectId;
+        }
+    }
+
+    private static final class TaskTally {
+        private final Long projectId;
+        private final Long taskId;
+        private final LongAdder count = new LongAdder();
+        // Only read and written under the engine monitor, by flush and seed
+        private long flushedCount;
+
+        private TaskTally(Long projectId, Long taskId, long count) {
+            this.projectId = projectId;
+            this.taskId = taskId;
+            this.count.add(count);
+            this.flushedCount = count;
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        refreshIntervalNanos = TimeUnit.MILLISECONDS.toNanos(refreshIntervalMs);
+
+        flushTransaction = new TransactionTemplate(transactionManager);
+        flushTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        seedTransaction = new TransactionTemplate(transactionManager);
+
+        replicaSeedTransaction = new TransactionTemplate(transactionManager);
+        replicaSeedTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        projects = Caffeine.newBuilder()
+                .maximumSize(maxProjects)
+                .removalListener((Long projectId, ProjectTally tally, RemovalCause cause) -> {
+                    if (cause.wasEvicted()) {
+                        flush(Collections.singletonList(tally));
+                    }
+                })
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, projects, "voteTallies");
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+    }
+
+    // Counters of a freshly created project start at zero, no need to read them back
+    public void registerProject(Long projectId, List<Long> taskIds) {
+        ProjectTally project = new ProjectTally(projectId);
+        taskIds.forEach(taskId -> project.tasks.put(taskId, new TaskTally(projectId, taskId, 0)));
+        project.seededAtNanos = System.nanoTime();
+        project.seeded = true;
+
+        projects.asMap().putIfAbsent(projectId, project);
+        projectVersionTracker.projectChanged(projectId);
+    }
+
+    public void recordVote(Long projectId, Long taskId) {
+        ProjectTally project = seed(Collections.singletonList(projectId)).get(projectId);
+
+        // Task without a persisted counter yet; the reconciler corrects any votes it had before
+        TaskTally tally = project.tasks.computeIfAbsent(taskId, id -> new TaskTally(projectId, id, 0));
+
+        tally.count.increment();
+        projectVersionTracker.projectChanged(projectId);
+    }
+
+    public Map<Long, Long> getTaskVoteCounts(Long projectId) {
+        return getTaskVoteCounts(Collections.singletonList(projectId));
+    }
+
+    public Map<Long, Long> getTaskVoteCounts(Collection<Long> projectIds) {
+        Map<Long, ProjectTally> tallies = seed(projectIds);
+
+        Map<Long, Long> taskVotesMap = new HashMap<>();
+        tallies.values().forEach(project -> project.tasks.forEach(
+                (taskId, tally) -> taskVotesMap.put(taskId, tally.count.sum())));
+        return taskVotesMap;
+    }
+
+    // Re-reads the project's counters once due, so that a version taken afterwards covers other nodes' flushed votes
+    public void refreshIfStale(Long projectId) {
+        seed(Collections.singletonList(projectId));
+    }
+
+    // Used by the reconciler once it has repaired a counter of the project; the next read picks the repair up
+    public synchronized void refreshSoon(Long projectId) {
+        ProjectTally project = projects.getIfPresent(projectId);
+        if (project != null) {
+            project.seeded = false;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.voteTallyFlushIntervalMs:1000}")
+    public void flush() {
+        flush(projects.asMap().values());
+    }
+
+    private synchronized void flush(Collection<ProjectTally> tallies) {
+        Map<TaskTally, Long> snapshot = new HashMap<>();
+        tallies.forEach(project -> project.tasks.values().forEach(tally -> {
+            long count = tally.count.sum();
+            if (count != tally.flushedCount) {
+                snapshot.put(tally, count);
+            }
+        }));
+
+        if (snapshot.isEmpty()) {
+            return;
+        }
+
+        try {
+            flushTransaction.execute(status -> {
+                snapshot.forEach((tally, count) -> {
+                    // Persist increments rather than absolute values so the write never hides votes from other writers
+                    if (taskVoteCounterRepository.addVotes(tally.taskId, count - tally.flushedCount) == 0) {
+                        taskVoteCounterRepository.save(new TaskVoteCounter(tally.taskId, tally.projectId, count));
+                    }
+                });
+                return null;
+            });
+        } catch (RuntimeException ex) {
+            // Nothing is marked as flushed, the next run retries the same increments
+            logger.error("Could not flush vote tallies, will retry", ex);
+            return;
+        }
+
+        snapshot.forEach((tally, count) -> tally.flushedCount = count);
+        flushGeneration++;
+    }
+
+    private TaskTally findTally(Long projectId, Long taskId) {
+        ProjectTally project = projects.getIfPresent(projectId);
+        return project == null ? null : project.tasks.get(taskId);
+    }
+
+    // Returns the tallies of the given projects, reading the counters of those missing or due for a refresh
+    private Map<Long, ProjectTally> seed(Collection<Long> projectIds) {
+        Map<Long, ProjectTally> tallies = new HashMap<>(projects.getAllPresent(projectIds));
+
+        long now = System.nanoTime();
+        List<Long> stale = projectIds.stream()
+                .distinct()
+                .filter(projectId -> {
+                    ProjectTally project = tallies.get(projectId);
+                    return project == null || !project.seeded || now - project.seededAtNanos > refreshIntervalNanos;
+                })
+                .collect(Collectors.toList());
+
+        if (stale.isEmpty()) {
+            return tallies;
+        }
+
+        // A second transaction only when the first is on the replica; a second primary connection per request could
+        // drain the pool with every request waiting for one
+        TransactionTemplate transaction = ReadWriteRoutingDataSource.isReplicaTransaction()
+                ? replicaSeedTransaction : seedTransaction;
+
+        long generation = flushGeneration;
+        Map<Long, List<TaskVoteCounter>> countersByProject = transaction.execute(status ->
+                taskVoteCounterRepository.findByProjectIdIn(stale).stream()
+                        .collect(Collectors.groupingBy(TaskVoteCounter::getProjectId)));
+
+        synchronized (this) {
+            // After a flush the rows read may lack increments already counted as flushed, keep the local counts then
+            boolean current = generation == flushGeneration;
+
+            stale.forEach(projectId -> {
+                ProjectTally project = projects.get(projectId, ProjectTally::new);
+                // A tag handed out before the project was evicted or repaired must not match counts read again now
+                boolean firstSeed = !project.seeded;
+                countersByProject.getOrDefault(projectId, Collections.emptyList()).forEach(counter -> {
+                    TaskTally tally = project.tasks.putIfAbsent(counter.getTaskId(),
+                            new TaskTally(projectId, counter.getTaskId(), counter.getVoteCount()));
+                    if (tally != null && current && tally.flushedCount != counter.getVoteCount()) {
+                        // Votes persisted by other nodes; increments not flushed yet stay on top
+                        tally.count.add(counter.getVoteCount() - tally.flushedCount);
+                        tally.flushedCount = counter.getVoteCount();
+                        projectVersionTracker.projectChanged(projectId);
+                    }
+                });
+
+                if (current) {
+                    project.seededAtNanos = now;
+                    project.seeded = true;
+                    if (firstSeed) {
+                        projectVersionTracker.projectChanged(projectId);
+                    }
+                }
+                tallies.put(projectId, project);
+            });
+        }
+
+        return tallies;
+    }
+}
@@ -1,6 +1,8 @@
 package com.ivoka.authJWT.util;
 
 import com.ivoka.authJWT.model.Project;
+import com.ivoka.authJWT.model.ProjectSummary;
+import com.ivoka.authJWT.model.TaskSummary;
 import com.ivoka.authJWT.model.User;
 import com.ivoka.authJWT.payload.ProjectResponse;
 import com.ivoka.authJWT.payload.TaskResponse;
@@ -48,4 +50,34 @@ public class ModelMapper {
 
         return projectResponse;
     }
+
+    public static ProjectResponse mapProjectSummaryToProjectResponse(ProjectSummary project, List<TaskSummary> tasks, Map<Long, Long> taskVotesMap) {
+        ProjectResponse projectResponse = new ProjectResponse();
+        projectResponse.setId(project.getId());
+        projectResponse.setProjectName(project.getProjectName());
+        projectResponse.setCreationDateTime(project.getCreatedAt());
+        projectResponse.setExpirationDateTime(project.getExpirationDateTime());
+        Instant now = Instant.now();
+        projectResponse.setExpired(project.getExpirationDateTime().isBefore(now));
+
+        List<TaskResponse> taskResponses = tasks.stream().map(task -> {
+            TaskResponse taskResponse = new TaskResponse();
+            taskResponse.setId(task.getId());
+            taskResponse.setText(task.getText());
+            taskResponse.setVoteCount(taskVotesMap.getOrDefault(task.getId(), 0L));
+
+            if(task.isSelectedByUser()) {
+                projectResponse.setSelectedTasks(task.getId());
+            }
+            return taskResponse;
+        }).collect(Collectors.toList());
+
+        projectResponse.setTasks(taskResponses);
+        projectResponse.setCreatedBy(new UserSummary(project.getCreatorId(), project.getCreatorUsername(), project.getCreatorName()));
+
+        long totalVotes = taskResponses.stream().mapToLong(TaskResponse::getVoteCount).sum();
+        projectResponse.setTotalVotes(totalVotes);
+
+        return projectResponse;
+    }
 }
@@ -0,0 +1,97 @@
+package com.ivoka.authJWT.config;
+
+import org.junit.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// A single permit throughout, so a leaked or doubly returned permit shows up on the next getConnection
+public class ConcurrencyLimitedDataSourceTests {
+
+    private static final long TIMEOUT_MILLIS = 50;
+
+    @Test
+    public void closingTheConnectionReturnsThePermit() throws SQLException {
+        ConcurrencyLimitedDataSource dataSource = limited(embedded());
+
+        Connection first = dataSource.getConnection();
+        first.close();
+        assertTrue(first.isClosed());
+
+        try (Connection second = dataSource.getConnection()) {
+            assertFalse(second.isClosed());
+        }
+    }
+
+    @Test
+    public void closingTwiceReturnsThePermitOnce() throws SQLException {
+        ConcurrencyLimitedDataSource dataSource = limited(embedded());
+
+        Connection first = dataSource.getConnection();
+        first.close();
+        first.close();
+
+        try (Connection second = dataSource.getConnection()) {
+            assertTimesOut(dataSource);
+        }
+    }
+
+    @Test
+    public void failedGetConnectionReturnsThePermit() throws SQLException {
+        ConcurrencyLimitedDataSource dataSource = limited(new DriverManagerDataSource() {
+            @Override
+            public Connection getConnection() throws SQLException {
+                throw new SQLException("Database down");
+            }
+        });
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                dataSource.getConnection();
+                fail("Expected the pool's SQLException");
+            } catch (SQLTransientConnectionException ex) {
+                fail("Permit was not returned after a failed getConnection");
+            } catch (SQLException ex) {
+                // expected, from the pool
+            }
+        }
+    }
+
+    @Test
+    public void waitingPastTheTimeoutFails() throws SQLException {
+        ConcurrencyLimitedDataSource dataSource = limited(embedded());
+
+        try (Connection held = dataSource.getConnection()) {
+            long start = System.nanoTime();
+            assertTimesOut(dataSource);
+            assertTrue((System.nanoTime() - start) / 1_000_000 >= TIMEOUT_MILLIS);
+        }
+
+        // The timed out caller must not have taken the permit with it
+        dataSource.getConnection().close();
+    }
+
+    private static void assertTimesOut(DataSource dataSource) throws SQLException {
+        try {
+            dataSource.getConnection();
+            fail("Expected no permit to be available");
+        } catch (SQLTransientConnectionException ex) {
+            // expected
+        }
+    }
+
+    private static ConcurrencyLimitedDataSource limited(DataSource target) {
+        return new ConcurrencyLimitedDataSource(target, 1, TIMEOUT_MILLIS);
+    }
+
+    private static DataSource embedded() {
+        return new DriverManagerDataSource("jdbc:h2:mem:limited;DB_CLOSE_DELAY=-1", "sa", "");
+    }
+}
@@ -0,0 +1,66 @@
+package com.ivoka.authJWT.config;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+import static org.junit.Assert.assertEquals;
+
+// Two embedded databases stand in for the primary and the replica
+public class ReadWriteRoutingDataSourceTests {
+
+    private JdbcTemplate jdbcTemplate;
+    private DataSourceTransactionManager transactionManager;
+
+    @Before
+    public void setUp() {
+        // Same wiring as DataSourceConfig; the transaction manager asks for a connection before the read-only flag is set
+        DataSource dataSource = new LazyConnectionDataSourceProxy(
+                new ReadWriteRoutingDataSource(embedded("primary"), embedded("replica")));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+    }
+
+    @Test
+    public void markedReadOnlyTransactionsUseTheReplica() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        boolean previous = ReadWriteRoutingDataSource.allowReplicaReads(true);
+        try {
+            assertEquals("REPLICA", readOnly.execute(status -> currentDatabase()));
+        } finally {
+            ReadWriteRoutingDataSource.allowReplicaReads(previous);
+        }
+    }
+
+    @Test
+    public void unmarkedReadOnlyTransactionsUseThePrimary() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        assertEquals("PRIMARY", readOnly.execute(status -> currentDatabase()));
+    }
+
+    @Test
+    public void writesAndNonTransactionalWorkUseThePrimary() {
+        TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+
+        assertEquals("PRIMARY", readWrite.execute(status -> currentDatabase()));
+        assertEquals("PRIMARY", currentDatabase());
+    }
+
+    private String currentDatabase() {
+        return jdbcTemplate.queryForObject("SELECT DATABASE()", String.class).toUpperCase();
+    }
+
+    private static DataSource embedded(String name) {
+        return new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+    }
+}
@@ -0,0 +1,119 @@
+package com.ivoka.authJWT.config;
+
+import com.ivoka.authJWT.repository.RoleRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// The full DataSourceConfig wiring with JpaTransactionManager; the replica is an empty database of its own
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:authJWT-routing;MODE=MySQL;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "app.datasource.replica.url=jdbc:h2:mem:authJWT-routing-replica;MODE=MySQL;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE"})
+@ActiveProfiles("test")
+public class ReplicaReadRoutingTests {
+
+    private static final String PRIMARY = "AUTHJWT-ROUTING";
+    private static final String REPLICA = "AUTHJWT-ROUTING-REPLICA";
+
+    @Autowired
+    private DatabaseProbe databaseProbe;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @TestConfiguration
+    static class ProbeConfig {
+        @Bean
+        public DatabaseProbe databaseProbe() {
+            return new DatabaseProbe();
+        }
+    }
+
+    static class DatabaseProbe {
+        @Autowired
+        private JdbcTemplate jdbcTemplate;
+
+        @Autowired
+        private PlatformTransactionManager transactionManager;
+
+        @ReplicaRead
+        @Transactional(readOnly = true)
+        public String replicaRead() {
+            return currentDatabase(jdbcTemplate);
+        }
+
+        @Transactional(readOnly = true)
+        public String unmarkedRead() {
+            return currentDatabase(jdbcTemplate);
+        }
+
+        // Same as VoteTallyEngine's seed: its own read-write transaction inside a replica read
+        @ReplicaRead
+        @Transactional(readOnly = true)
+        public String primaryReadInsideReplicaRead() {
+            TransactionTemplate ownTransaction = new TransactionTemplate(transactionManager);
+            ownTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            return ownTransaction.execute(status -> currentDatabase(jdbcTemplate));
+        }
+    }
+
+    @Test
+    public void runsOnJpaTransactionManager() {
+        assertTrue(transactionManager instanceof JpaTransactionManager);
+    }
+
+    @Test
+    public void markedReadOnlyTransactionsUseTheReplica() {
+        assertEquals(REPLICA, databaseProbe.replicaRead());
+    }
+
+    @Test
+    public void unmarkedReadOnlyTransactionsUseThePrimary() {
+        assertEquals(PRIMARY, databaseProbe.unmarkedRead());
+    }
+
+    @Test
+    public void ownTransactionsInsideReplicaReadsUseThePrimary() {
+        assertEquals(PRIMARY, databaseProbe.primaryReadInsideReplicaRead());
+    }
+
+    @Test
+    public void repositoryReadsUseThePrimary() {
+        // The replica has no tables, so a repository read sent there would fail
+        long rolesOnPrimary = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM roles", Long.class);
+
+        assertEquals(rolesOnPrimary, roleRepository.count());
+    }
+
+    @Test
+    public void theMarkerDoesNotOutliveTheMethod() {
+        databaseProbe.replicaRead();
+
+        assertEquals(PRIMARY, databaseProbe.unmarkedRead());
+    }
+
+    private static String currentDatabase(JdbcTemplate jdbcTemplate) {
+        return jdbcTemplate.queryForObject("SELECT DATABASE()", String.class).toUpperCase();
+    }
+}
@@ -0,0 +1,136 @@
+package com.ivoka.authJWT.controller;
+
+import com.ivoka.authJWT.exception.ServiceUnavailableException;
+import com.ivoka.authJWT.model.User;
+import com.ivoka.authJWT.repository.UserRepository;
+import com.ivoka.authJWT.security.JwtTokenProvider;
+import com.ivoka.authJWT.security.JwtValidationResult;
+import com.ivoka.authJWT.service.PasswordHashingService;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+// The spied bean forces a context of its own; a separate database keeps its create-drop away from the shared one
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:authJWT-auth;MODE=MySQL;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class AuthControllerTests {
+
+    private static final String SIGNUP = "{\"name\":\"Busy User\",\"username\":\"busy\",\"email\":\"busy@example.com\",\"password\":\"secret123\"}";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private JwtTokenProvider tokenProvider;
+
+    // Real hashing unless a test stubs a rejection
+    @SpyBean
+    private PasswordHashingService passwordHashingService;
+
+    @After
+    public void tearDown() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    public void signinWithBadCredentialsAnswers401AfterAsyncDispatch() throws Exception {
+        // A username of its own: cached principals outlive the tearDown's deleteAll
+        userRepository.save(new User("Wrong Password", "wrongpassword", "wrongpassword@example.com", passwordEncoder.encode("secret123")));
+
+        MvcResult signin = mockMvc.perform(post("/api/auth/signin")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"usernameOrEmail\":\"wrongpassword\",\"password\":\"wrong-password\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(signin)).andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    public void signinReturnsATokenAfterAsyncDispatch() throws Exception {
+        User user = userRepository.save(new User("Signin User", "signin", "signin@example.com", passwordEncoder.encode("secret123")));
+
+        MvcResult signin = mockMvc.perform(post("/api/auth/signin")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"usernameOrEmail\":\"signin\",\"password\":\"secret123\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(signin))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.tokenType").value("Bearer"))
+                .andReturn().getResponse().getContentAsString();
+
+        JwtValidationResult token = tokenProvider.parseAndValidate(JsonPath.read(body, "$.accessToken"));
+        assertTrue(token.isValid());
+        assertEquals(user.getId(), token.getToken().getUserId());
+    }
+
+    @Test
+    public void signinAnswers503WhenTheHashingPoolIsFull() throws Exception {
+        doThrow(new ServiceUnavailableException("busy")).when(passwordHashingService).submit(any());
+
+        mockMvc.perform(post("/api/auth/signin")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"usernameOrEmail\":\"busy\",\"password\":\"secret123\"}"))
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    public void signupAnswers503WhenTheHashingPoolIsFull() throws Exception {
+        doThrow(new ServiceUnavailableException("busy")).when(passwordHashingService).encode(any());
+
+        mockMvc.perform(post("/api/auth/signup").contentType(MediaType.APPLICATION_JSON).content(SIGNUP))
+                .andExpect(status().isServiceUnavailable());
+
+        assertFalse(userRepository.existsByUsername("busy"));
+    }
+
+    @Test
+    public void signupAnswers503WhenTheStoragePoolIsFull() throws Exception {
+        CompletableFuture<Object> rejected = new CompletableFuture<>();
+        rejected.completeExceptionally(new ServiceUnavailableException("busy"));
+        doReturn(CompletableFuture.completedFuture("hash")).when(passwordHashingService).encode(any());
+        doReturn(rejected).when(passwordHashingService).thenStore(any(), any());
+
+        MvcResult signup = mockMvc.perform(post("/api/auth/signup").contentType(MediaType.APPLICATION_JSON).content(SIGNUP))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(signup)).andExpect(status().isServiceUnavailable());
+
+        assertFalse(userRepository.existsByUsername("busy"));
+    }
+}
@@ -0,0 +1,205 @@
+package com.ivoka.authJWT.controller;
+
+import com.ivoka.authJWT.model.Project;
+import com.ivoka.authJWT.payload.VoteRequest;
+import com.ivoka.authJWT.repository.TaskVoteCounterRepository;
+import com.ivoka.authJWT.security.UserPrincipal;
+import com.ivoka.authJWT.service.ProjectFixture;
+import com.ivoka.authJWT.service.ProjectService;
+import com.ivoka.authJWT.service.VoteStreamService;
+import com.ivoka.authJWT.service.VoteTallyEngine;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+
+import static org.junit.Assert.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class ProjectControllerTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProjectService projectService;
+
+    @Autowired
+    private ProjectFixture projectFixture;
+
+    @Autowired
+    private VoteStreamService voteStreamService;
+
+    @Autowired
+    private VoteTallyEngine voteTallyEngine;
+
+    @Autowired
+    private TaskVoteCounterRepository taskVoteCounterRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private UserPrincipal creator;
+
+    private Project project;
+
+    @Before
+    public void setUp() {
+        creator = projectFixture.createUser("Project Creator", "creator");
+        projectFixture.authenticate(creator);
+        project = projectFixture.createProject("Conditional", 2);
+        SecurityContextHolder.clearContext();
+    }
+
+    @After
+    public void tearDown() {
+        projectFixture.deleteAll();
+    }
+
+    @Test
+    public void projectIsNotResentUntilAVoteChangesIt() throws Exception {
+        String url = "/api/projects/" + project.getId();
+
+        String etag = mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+
+        mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        VoteRequest voteRequest = new VoteRequest();
+        voteRequest.setTaskId(project.getTasks().get(0).getId());
+        projectService.castVoteAndGetUpdatedProject(project.getId(), voteRequest, creator);
+
+        String newEtag = mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(etag, newEtag);
+    }
+
+    @Test
+    public void projectIsResentOnceAVoteFromAnotherNodeIsRead() throws Exception {
+        String url = "/api/projects/" + project.getId();
+        String etag = mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // Another node stores a vote and flushes its increment to the counter
+        Long taskId = project.getTasks().get(0).getId();
+        Timestamp now = Timestamp.from(Instant.now());
+        jdbcTemplate.update("INSERT INTO votes (created_at, updated_at, project_id, task_id, user_id) VALUES (?, ?, ?, ?, ?)",
+                now, now, project.getId(), taskId, creator.getId());
+        taskVoteCounterRepository.addVotes(taskId, 1);
+
+        long refreshIntervalNanos = (long) ReflectionTestUtils.getField(voteTallyEngine, "refreshIntervalNanos");
+        ReflectionTestUtils.setField(voteTallyEngine, "refreshIntervalNanos", 0L);
+        try {
+            String newEtag = mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.totalVotes").value(1))
+                    .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+            assertNotEquals(etag, newEtag);
+        } finally {
+            ReflectionTestUtils.setField(voteTallyEngine, "refreshIntervalNanos", refreshIntervalNanos);
+        }
+    }
+
+    @Test
+    public void listingIsNotResentUntilSomethingChanges() throws Exception {
+        String etag = mockMvc.perform(get("/api/projects"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/api/projects").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        // Another listing, or another page of the same one, is never answered from this tag
+        mockMvc.perform(get("/api/users/creator/projects").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/projects").param("page", "1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+
+        VoteRequest voteRequest = new VoteRequest();
+        voteRequest.setTaskId(project.getTasks().get(1).getId());
+        projectService.castVoteAndGetUpdatedProject(project.getId(), voteRequest, creator);
+
+        mockMvc.perform(get("/api/projects").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void streamPushesCountsThenDeltas() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/projects/" + project.getId() + "/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        waitForContent(result, "event:counts");
+
+        VoteRequest voteRequest = new VoteRequest();
+        voteRequest.setTaskId(project.getTasks().get(0).getId());
+        projectService.castVoteAndGetUpdatedProject(project.getId(), voteRequest, creator);
+        voteStreamService.broadcast();
+
+        waitForContent(result, "event:delta");
+        assertTrue(result.getResponse().getContentAsString().contains("\"totalVotes\":1"));
+    }
+
+    @Test
+    public void reactiveReadsAnswerAsynchronously() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/rx/projects/" + project.getId()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(project.getId()))
+                .andExpect(jsonPath("$.tasks.length()").value(2));
+
+        MvcResult profile = mockMvc.perform(get("/api/rx/users/creator"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(profile))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.projectCount").value(1));
+
+        MvcResult missing = mockMvc.perform(get("/api/rx/projects/0"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(missing))
+                .andExpect(status().isNotFound());
+    }
+
+    private static void waitForContent(MvcResult result, String expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!result.getResponse().getContentAsString().contains(expected)) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("No " + expected + " in " + result.getResponse().getContentAsString());
+            }
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.ivoka.authJWT.controller;
+
+import com.ivoka.authJWT.model.User;
+import com.ivoka.authJWT.repository.UserRepository;
+import com.ivoka.authJWT.service.UserIdentityFilter;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.junit.Assert.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class UserControllerTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserIdentityFilter userIdentityFilter;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @Before
+    public void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        userRepository.save(new User("Taken User", "taken", "taken@example.com", "secret"));
+        userIdentityFilter.reload();
+    }
+
+    @After
+    public void tearDown() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    public void unknownNamesAreAvailableWithoutAQuery() throws Exception {
+        statistics.clear();
+
+        mockMvc.perform(from("10.0.0.1", get("/api/user/checkUsernameAvailability").param("username", "fresh")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.available").value(true));
+        mockMvc.perform(from("10.0.0.1", get("/api/user/checkEmailAvailability").param("email", "fresh@example.com")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.available").value(true));
+
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void takenNamesAreConfirmedByTheDatabase() throws Exception {
+        statistics.clear();
+
+        mockMvc.perform(from("10.0.0.2", get("/api/user/checkUsernameAvailability").param("username", "taken")))
+                .andExpect(jsonPath("$.available").value(false));
+        mockMvc.perform(from("10.0.0.2", get("/api/user/checkEmailAvailability").param("email", "taken@example.com")))
+                .andExpect(jsonPath("$.available").value(false));
+
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void usersRecordedAfterTheLoadAreSeen() throws Exception {
+        userRepository.save(new User("Late User", "late", "late@example.com", "secret"));
+        userIdentityFilter.recordUser("late", "late@example.com");
+
+        mockMvc.perform(from("10.0.0.3", get("/api/user/checkUsernameAvailability").param("username", "late")))
+                .andExpect(jsonPath("$.available").value(false));
+    }
+
+    @Test
+    public void eachClientIsRateLimitedPerEndpoint() throws Exception {
+        int status = 200;
+        for (int i = 0; i < 40 && status == 200; i++) {
+            status = mockMvc.perform(from("10.0.0.4", get("/api/user/checkEmailAvailability").param("email", "x" + i + "@example.com")))
+                    .andReturn().getResponse().getStatus();
+        }
+        assertEquals(429, status);
+
+        // Other endpoints and other clients keep their own budget
+        mockMvc.perform(from("10.0.0.4", get("/api/user/checkUsernameAvailability").param("username", "fresh")))
+                .andExpect(status().isOk());
+        mockMvc.perform(from("10.0.0.5", get("/api/user/checkEmailAvailability").param("email", "fresh@example.com")))
+                .andExpect(status().isOk());
+    }
+
+    private static MockHttpServletRequestBuilder from(String remoteAddress, MockHttpServletRequestBuilder request) {
+        return request.with(servletRequest -> {
+            servletRequest.setRemoteAddr(remoteAddress);
+            return servletRequest;
+        });
+    }
+}
@@ -0,0 +1,25 @@
+package com.ivoka.authJWT.security;
+
+import org.junit.Test;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+
+import static org.junit.Assert.*;
+
+public class CostAwareBCryptPasswordEncoderTests {
+
+    private final CostAwareBCryptPasswordEncoder encoder = new CostAwareBCryptPasswordEncoder(5);
+
+    @Test
+    public void onlyLowerCostsNeedAnUpgrade() {
+        assertTrue(encoder.upgradeEncoding(BCrypt.hashpw("secret", BCrypt.gensalt(4))));
+        assertFalse(encoder.upgradeEncoding(BCrypt.hashpw("secret", BCrypt.gensalt(5))));
+        assertFalse(encoder.upgradeEncoding(BCrypt.hashpw("secret", BCrypt.gensalt(6))));
+    }
+
+    @Test
+    public void unparseableHashesAreLeftAlone() {
+        assertFalse(encoder.upgradeEncoding(null));
+        assertFalse(encoder.upgradeEncoding("plain"));
+        assertFalse(encoder.upgradeEncoding("$2a$xx$somethingelse"));
+    }
+}
@@ -0,0 +1,89 @@
+package com.ivoka.authJWT.security;
+
+import com.ivoka.authJWT.model.Role;
+import com.ivoka.authJWT.model.RoleName;
+import com.ivoka.authJWT.model.User;
+import com.ivoka.authJWT.repository.RoleRepository;
+import com.ivoka.authJWT.repository.UserRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.junit.Assert.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class CustomUserDetailsServiceTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CustomUserDetailsService customUserDetailsService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Before
+    public void setUp() {
+        // Not findByName: the query cache is shared with the other test contexts, whose create-drop may have removed the row
+        if (roleRepository.findAll().stream().noneMatch(role -> role.getName() == RoleName.ROLE_USER)) {
+            roleRepository.save(new Role(RoleName.ROLE_USER));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    public void cachedPrincipalIsServedUntilEvicted() {
+        User user = userRepository.save(new User("Original Name", "cached", "cached@example.com", "secret"));
+        assertEquals("Original Name", ((UserPrincipal) customUserDetailsService.loadUserById(user.getId())).getName());
+
+        user.setName("Changed Name");
+        userRepository.save(user);
+        assertEquals("Original Name", ((UserPrincipal) customUserDetailsService.loadUserById(user.getId())).getName());
+
+        customUserDetailsService.evictUser(user);
+        assertEquals("Changed Name", ((UserPrincipal) customUserDetailsService.loadUserById(user.getId())).getName());
+    }
+
+    @Test
+    public void signupReplacesAPrincipalCachedUnderTheSameLogin() throws Exception {
+        User previous = userRepository.save(new User("Previous Owner", "recycled", "recycled@example.com", "secret"));
+        assertEquals(previous.getId(), ((UserPrincipal) customUserDetailsService.loadUserByUsername("recycled")).getId());
+        userRepository.delete(previous);
+
+        MvcResult signup = mockMvc.perform(post("/api/auth/signup")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"New Owner\",\"username\":\"recycled\",\"email\":\"recycled@example.com\",\"password\":\"secret123\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(signup)).andExpect(status().isCreated());
+
+        Long newId = userRepository.findByUsername("recycled").get().getId();
+        assertNotEquals(previous.getId(), newId);
+        assertEquals(newId, ((UserPrincipal) customUserDetailsService.loadUserByUsername("recycled")).getId());
+        assertEquals(newId, ((UserPrincipal) customUserDetailsService.loadUserByUsername("recycled@example.com")).getId());
+    }
+}
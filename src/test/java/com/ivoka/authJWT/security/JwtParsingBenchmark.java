@@ -0,0 +1,71 @@
+package com.ivoka.authJWT.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of checking a JWT: the former validateToken + getUserIdFromJWT pair, which parsed and verified
+ * the token twice with a parser built from the String secret each time, against a single parseAndValidate.
+ * Not a unit test; run the main method from the test classpath.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtParsingBenchmark {
+
+    private static final String SECRET = "JWTSuperSecretKey";
+
+    private JwtTokenProvider tokenProvider;
+
+    private String token;
+
+    @Setup
+    public void setUp() {
+        tokenProvider = new JwtTokenProvider();
+        ReflectionTestUtils.setField(tokenProvider, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(tokenProvider, "jwtExpirationInMs", 3600000);
+        ReflectionTestUtils.setField(tokenProvider, "claimsVersion", 1);
+        tokenProvider.init();
+
+        token = Jwts.builder()
+                .setSubject("42")
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + 3600000))
+                .claim("username", "benchmark")
+                .claim("name", "Benchmark User")
+                .claim("roles", Arrays.asList("ROLE_USER"))
+                .claim("ver", 1)
+                .signWith(SignatureAlgorithm.HS512, SECRET)
+                .compact();
+    }
+
+    @Benchmark
+    public Long parseTwice() {
+        // As JwtAuthenticationFilter used to: validateToken, then getUserIdFromJWT
+        Jwts.parser().setSigningKey(SECRET).parseClaimsJws(token);
+        Claims claims = Jwts.parser().setSigningKey(SECRET).parseClaimsJws(token).getBody();
+        return Long.parseLong(claims.getSubject());
+    }
+
+    @Benchmark
+    public Long parseAndValidate() {
+        return tokenProvider.parseAndValidate(token).getToken().getUserId();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JwtParsingBenchmark.class.getSimpleName()).build()).run();
+    }
+}
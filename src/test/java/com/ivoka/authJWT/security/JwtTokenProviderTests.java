@@ -0,0 +1,82 @@
+package com.ivoka.authJWT.security;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.impl.TextCodec;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+public class JwtTokenProviderTests {
+
+    private static final String SECRET = "JWTSuperSecretKey";
+
+    private JwtTokenProvider tokenProvider;
+
+    @Before
+    public void setUp() {
+        tokenProvider = new JwtTokenProvider();
+        ReflectionTestUtils.setField(tokenProvider, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(tokenProvider, "jwtExpirationInMs", 60000);
+        ReflectionTestUtils.setField(tokenProvider, "claimsVersion", 1);
+        tokenProvider.init();
+    }
+
+    @Test
+    public void validTokenYieldsItsSubject() {
+        JwtValidationResult result = tokenProvider.parseAndValidate(sign("42", 60000));
+
+        assertTrue(result.isValid());
+        assertEquals(Long.valueOf(42), result.getToken().getUserId());
+    }
+
+    @Test
+    public void signedTokenWithNonNumericSubjectIsMalformed() {
+        JwtValidationResult result = tokenProvider.parseAndValidate(sign("not-a-number", 60000));
+
+        assertFalse(result.isValid());
+        assertEquals(JwtValidationResult.Failure.MALFORMED, result.getFailure());
+    }
+
+    @Test
+    public void expiredTokenIsRejected() {
+        JwtValidationResult result = tokenProvider.parseAndValidate(sign("42", -1000));
+
+        assertEquals(JwtValidationResult.Failure.EXPIRED, result.getFailure());
+    }
+
+    @Test
+    public void tokenFromAnOlderClaimsVersionIsRejected() {
+        String current = signWithVersion(1);
+        String stale = signWithVersion(0);
+
+        assertTrue(tokenProvider.parseAndValidate(current).isValid());
+        assertEquals(JwtValidationResult.Failure.STALE_VERSION, tokenProvider.parseAndValidate(stale).getFailure());
+    }
+
+    private static String sign(String subject, long validForMillis) {
+        return Jwts.builder()
+                .setSubject(subject)
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + validForMillis))
+                .signWith(SignatureAlgorithm.HS512, TextCodec.BASE64.decode(SECRET))
+                .compact();
+    }
+
+    private static String signWithVersion(int version) {
+        return Jwts.builder()
+                .setSubject("42")
+                .setExpiration(new Date(System.currentTimeMillis() + 60000))
+                .claim("username", "user")
+                .claim("name", "User")
+                .claim("roles", Collections.singletonList("ROLE_USER"))
+                .claim("ver", version)
+                .signWith(SignatureAlgorithm.HS512, TextCodec.BASE64.decode(SECRET))
+                .compact();
+    }
+}
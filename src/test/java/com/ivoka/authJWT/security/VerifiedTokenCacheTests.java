@@ -0,0 +1,41 @@
+package com.ivoka.authJWT.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class VerifiedTokenCacheTests {
+
+    private VerifiedTokenCache tokenCache;
+
+    @Before
+    public void setUp() {
+        tokenCache = new VerifiedTokenCache();
+        ReflectionTestUtils.setField(tokenCache, "maxSize", 100L);
+        ReflectionTestUtils.setField(tokenCache, "meterRegistry", new SimpleMeterRegistry());
+        tokenCache.init();
+    }
+
+    @Test
+    public void entriesExpireWithTheTokenExpClaim() throws InterruptedException {
+        tokenCache.put("short-lived", token(1L, System.currentTimeMillis() + 200));
+        tokenCache.put("already-expired", token(2L, System.currentTimeMillis() - 1));
+
+        assertNotNull(tokenCache.get("short-lived"));
+        assertNull(tokenCache.get("already-expired"));
+
+        Thread.sleep(300);
+
+        assertNull(tokenCache.get("short-lived"));
+    }
+
+    private static VerifiedJwt token(Long userId, long expirationMillis) {
+        return new VerifiedJwt(userId, null, null, Collections.emptyList(), null,
+                System.currentTimeMillis(), expirationMillis);
+    }
+}
@@ -0,0 +1,97 @@
+package com.ivoka.authJWT.service;
+
+import com.ivoka.authJWT.exception.ServiceUnavailableException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PasswordHashingServiceTests {
+
+    private PasswordHashingService passwordHashingService;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Before
+    public void setUp() {
+        passwordHashingService = new PasswordHashingService();
+        ReflectionTestUtils.setField(passwordHashingService, "queueCapacity", 1);
+        ReflectionTestUtils.setField(passwordHashingService, "storageThreads", 1);
+        passwordHashingService.init();
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        passwordHashingService.shutdown();
+    }
+
+    @Test
+    public void hashingIsRejectedOnceThePoolAndQueueAreFull() {
+        // Every hashing thread plus the single queue slot
+        int capacity = Runtime.getRuntime().availableProcessors() + 1;
+        for (int i = 0; i < capacity; i++) {
+            passwordHashingService.submit(this::block);
+        }
+
+        try {
+            passwordHashingService.submit(() -> "rejected");
+            fail("Expected the hashing pool to reject the task");
+        } catch (ServiceUnavailableException expected) {
+            // answered with a 503
+        }
+    }
+
+    @Test
+    public void storageIsRejectedOnceItsPoolAndQueueAreFull() throws InterruptedException {
+        List<CompletableFuture<String>> blocked = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            blocked.add(passwordHashingService.thenStore(CompletableFuture.completedFuture("hash"), hash -> block()));
+        }
+
+        CompletableFuture<String> rejected = passwordHashingService.thenStore(
+                CompletableFuture.completedFuture("hash"), hash -> hash);
+
+        try {
+            rejected.get(1, TimeUnit.SECONDS);
+            fail("Expected the storage pool to reject the task");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof ServiceUnavailableException);
+        } catch (Exception ex) {
+            fail("Expected a rejection, got " + ex);
+        }
+
+        release.countDown();
+        blocked.forEach(CompletableFuture::join);
+    }
+
+    @Test
+    public void storageRunsOffTheHashingPool() throws Exception {
+        String storedOn = passwordHashingService.thenStore(
+                passwordHashingService.submit(() -> Thread.currentThread().getName()),
+                hashedOn -> {
+                    assertTrue(hashedOn.startsWith("password-hashing-"));
+                    return Thread.currentThread().getName();
+                }).get(5, TimeUnit.SECONDS);
+
+        assertTrue(storedOn.startsWith("password-storage-"));
+    }
+
+    private String block() {
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        return "done";
+    }
+}
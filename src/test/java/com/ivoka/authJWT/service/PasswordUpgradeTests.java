@@ -0,0 +1,91 @@
+package com.ivoka.authJWT.service;
+
+import com.ivoka.authJWT.model.User;
+import com.ivoka.authJWT.repository.UserRepository;
+import com.ivoka.authJWT.security.UserPrincipal;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+// One cost step above the stored test hashes; a separate database keeps this context's create-drop away from the shared one
+@SpringBootTest(properties = {
+        "app.bcryptStrength = 5",
+        "spring.datasource.url=jdbc:h2:mem:authJWT-upgrade;MODE=MySQL;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE"
+})
+@ActiveProfiles("test")
+public class PasswordUpgradeTests {
+
+    private static final String PASSWORD = "secret123";
+
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @After
+    public void tearDown() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    public void lowerCostHashIsReplacedOnLogin() throws Exception {
+        User user = userRepository.save(new User("Old Hash", "oldhash", "oldhash@example.com", bcrypt(4)));
+
+        assertTrue(passwordHashingService.upgradeIfNeeded(UserPrincipal.create(user), PASSWORD).get(5, TimeUnit.SECONDS));
+
+        String upgraded = userRepository.findById(user.getId()).get().getPassword();
+        assertTrue(upgraded.startsWith("{bcrypt}$2a$05$"));
+        assertTrue(passwordEncoder.matches(PASSWORD, upgraded));
+    }
+
+    @Test
+    public void legacyHashWithoutPrefixIsReplacedOnLogin() throws Exception {
+        User user = userRepository.save(new User("Legacy Hash", "legacy", "legacy@example.com",
+                BCrypt.hashpw(PASSWORD, BCrypt.gensalt(5))));
+
+        assertTrue(passwordHashingService.upgradeIfNeeded(UserPrincipal.create(user), PASSWORD).get(5, TimeUnit.SECONDS));
+        assertTrue(userRepository.findById(user.getId()).get().getPassword().startsWith("{bcrypt}"));
+    }
+
+    @Test
+    public void higherCostHashIsKept() throws Exception {
+        String stored = bcrypt(6);
+        User user = userRepository.save(new User("Strong Hash", "stronghash", "stronghash@example.com", stored));
+
+        assertFalse(passwordHashingService.upgradeIfNeeded(UserPrincipal.create(user), PASSWORD).get(5, TimeUnit.SECONDS));
+        assertEquals(stored, userRepository.findById(user.getId()).get().getPassword());
+    }
+
+    @Test
+    public void upgradeNeverOverwritesAConcurrentPasswordChange() throws Exception {
+        User user = userRepository.save(new User("Changed Hash", "changed", "changed@example.com", bcrypt(4)));
+        UserPrincipal loggedIn = UserPrincipal.create(user);
+
+        // The password is changed between the login check and the background rehash
+        String changed = "{bcrypt}" + BCrypt.hashpw("another-secret", BCrypt.gensalt(5));
+        assertEquals(1, userRepository.updatePassword(user.getId(), user.getPassword(), changed, Instant.now()));
+
+        assertFalse(passwordHashingService.upgradeIfNeeded(loggedIn, PASSWORD).get(5, TimeUnit.SECONDS));
+        assertEquals(changed, userRepository.findById(user.getId()).get().getPassword());
+    }
+
+    private static String bcrypt(int cost) {
+        return "{bcrypt}" + BCrypt.hashpw(PASSWORD, BCrypt.gensalt(cost));
+    }
+}
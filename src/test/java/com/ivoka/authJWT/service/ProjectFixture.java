@@ -0,0 +1,84 @@
+package com.ivoka.authJWT.service;
+
+import com.ivoka.authJWT.model.Project;
+import com.ivoka.authJWT.model.User;
+import com.ivoka.authJWT.payload.ProjectLength;
+import com.ivoka.authJWT.payload.ProjectRequest;
+import com.ivoka.authJWT.payload.TaskRequest;
+import com.ivoka.authJWT.repository.*;
+import com.ivoka.authJWT.security.UserPrincipal;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Users and projects shared by the service and controller tests.
+ */
+@Component
+public class ProjectFixture {
+
+    @Autowired
+    private ProjectService projectService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ProjectRepository projectRepository;
+
+    @Autowired
+    private VoteRepository voteRepository;
+
+    @Autowired
+    private TaskVoteCounterRepository taskVoteCounterRepository;
+
+    @Autowired
+    private UserStatsRepository userStatsRepository;
+
+    public UserPrincipal createUser(String name, String username) {
+        return UserPrincipal.create(userRepository.save(new User(name, username, username + "@example.com", "secret")));
+    }
+
+    public void authenticate(UserPrincipal user) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+    }
+
+    // Created by the currently authenticated user
+    public Project createProject(String name, int taskCount) {
+        return projectService.createProject(projectRequest(name, taskCount));
+    }
+
+    public void deleteAll() {
+        SecurityContextHolder.clearContext();
+        voteRepository.deleteAll();
+        taskVoteCounterRepository.deleteAll();
+        projectRepository.deleteAll();
+        userStatsRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    public static ProjectRequest projectRequest(String name, int taskCount) {
+        ProjectRequest projectRequest = new ProjectRequest();
+        projectRequest.setProjectName(name);
+
+        List<TaskRequest> tasks = new ArrayList<>();
+        for (int i = 0; i < taskCount; i++) {
+            TaskRequest taskRequest = new TaskRequest();
+            taskRequest.setText("Task " + i);
+            tasks.add(taskRequest);
+        }
+        projectRequest.setTasks(tasks);
+
+        ProjectLength projectLength = new ProjectLength();
+        projectLength.setDays(1);
+        projectLength.setHours(0);
+        projectRequest.setProjectLength(projectLength);
+
+        return projectRequest;
+    }
+}
@@ -0,0 +1,393 @@
+package com.ivoka.authJWT.service;
+
+import com.ivoka.authJWT.exception.BadRequestException;
+import com.ivoka.authJWT.model.*;
+import com.ivoka.authJWT.payload.PagedResponse;
+import com.ivoka.authJWT.payload.ProjectResponse;
+import com.ivoka.authJWT.payload.VoteRequest;
+import com.ivoka.authJWT.repository.*;
+import com.ivoka.authJWT.security.UserPrincipal;
+import com.ivoka.authJWT.util.PageCursor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+public class ProjectServiceQueryCountTests {
+
+    // Page query, tasks-with-votes query and the page count query
+    private static final long MAX_STATEMENTS_PER_PAGE = 3;
+
+    private static final int PROJECT_COUNT = 6;
+    private static final int PAGE_SIZE = 4;
+
+    @Autowired
+    private ProjectService projectService;
+
+    @Autowired
+    private ProjectFixture projectFixture;
+
+    @Autowired
+    private VoteRepository voteRepository;
+
+    @Autowired
+    private TaskVoteCounterRepository taskVoteCounterRepository;
+
+    @Autowired
+    private VoteCounterReconciler voteCounterReconciler;
+
+    @Autowired
+    private VoteTallyEngine voteTallyEngine;
+
+    @Autowired
+    private VoteMembershipFilter voteMembershipFilter;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ProjectVersionTracker projectVersionTracker;
+
+    private Statistics statistics;
+
+    private UserPrincipal creator;
+
+    private UserPrincipal voter;
+
+    private List<Project> projects = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        creator = projectFixture.createUser("Project Creator", "creator");
+        voter = projectFixture.createUser("Project Voter", "voter");
+
+        projectFixture.authenticate(creator);
+
+        for (int i = 0; i < PROJECT_COUNT; i++) {
+            projects.add(projectFixture.createProject("Project " + i, 2));
+        }
+
+        for (Project project : projects) {
+            VoteRequest voteRequest = new VoteRequest();
+            voteRequest.setTaskId(project.getTasks().get(0).getId());
+            projectService.castVoteAndGetUpdatedProject(project.getId(), voteRequest, voter);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        projectFixture.deleteAll();
+    }
+
+    @Test
+    public void getAllProjectsUsesConstantNumberOfStatements() {
+        statistics.clear();
+
+        PagedResponse<ProjectResponse> response = projectService.getAllProjects(voter, 0, PAGE_SIZE);
+
+        assertEquals(PAGE_SIZE, response.getContent().size());
+        assertEquals(PROJECT_COUNT, response.getTotalElements());
+        assertStatementCountWithinBudget();
+
+        ProjectResponse first = response.getContent().get(0);
+        assertEquals(2, first.getTasks().size());
+        assertEquals(Long.valueOf(1), first.getTotalVotes());
+        assertEquals(Long.valueOf(first.getTasks().get(0).getId()), first.getSelectedTasks());
+        assertEquals("creator", first.getCreatedBy().getUsername());
+    }
+
+    @Test
+    public void getProjectsCreatedByUsesConstantNumberOfStatements() {
+        statistics.clear();
+
+        PagedResponse<ProjectResponse> response = projectService.getProjectsCreatedBy("creator", null, 0, PAGE_SIZE);
+
+        assertEquals(PAGE_SIZE, response.getContent().size());
+        // One extra statement to resolve the username
+        assertTrue("Statements: " + statistics.getPrepareStatementCount(),
+                statistics.getPrepareStatementCount() <= MAX_STATEMENTS_PER_PAGE + 1);
+        // Only the user resolved from the username
+        assertLoads(1, 0);
+        assertNull(response.getContent().get(0).getSelectedTasks());
+    }
+
+    @Test
+    public void getProjectsVotedByUsesConstantNumberOfStatements() {
+        statistics.clear();
+
+        PagedResponse<ProjectResponse> response = projectService.getProjectsVotedBy("voter", voter, 0, PAGE_SIZE);
+
+        assertEquals(PAGE_SIZE, response.getContent().size());
+        // Resolving the username and the voted project ids, then the same two data statements as a listing
+        assertTrue("Statements: " + statistics.getPrepareStatementCount(),
+                statistics.getPrepareStatementCount() <= MAX_STATEMENTS_PER_PAGE + 2);
+        assertLoads(1, 0);
+    }
+
+    @Test
+    public void readsShareOneReadOnlySessionAndConnection() {
+        statistics.clear();
+        projectService.getProjectsVotedBy("voter", voter, 0, PAGE_SIZE);
+        assertSingleReadOnlySession();
+
+        statistics.clear();
+        projectService.getProjectById(projects.get(0).getId(), voter);
+        assertSingleReadOnlySession();
+
+        statistics.clear();
+        assertEquals(PROJECT_COUNT, userService.getUserProfile("voter").getVoteCount().longValue());
+        assertSingleReadOnlySession();
+    }
+
+    @Test
+    public void cursorFeedWalksAllProjectsWithoutCountQuery() {
+        statistics.clear();
+
+        PagedResponse<ProjectResponse> first = projectService.getAllProjects(voter, PageCursor.decode(""), PAGE_SIZE);
+
+        assertEquals(PAGE_SIZE, first.getContent().size());
+        assertFalse(first.isLast());
+        assertNotNull(first.getNextCursor());
+        // Keyset page query and tasks-with-votes query, no COUNT
+        assertEquals(2, statistics.getPrepareStatementCount());
+
+        PagedResponse<ProjectResponse> second = projectService.getAllProjects(voter, PageCursor.decode(first.getNextCursor()), PAGE_SIZE);
+
+        assertEquals(PROJECT_COUNT - PAGE_SIZE, second.getContent().size());
+        assertTrue(second.isLast());
+        assertNull(second.getNextCursor());
+        assertTrue(first.getContent().get(PAGE_SIZE - 1).getId() > second.getContent().get(0).getId());
+        assertLoads(0, 0);
+    }
+
+    @Test
+    public void cursorFeedsOfUserLoadOnlyTheUser() {
+        statistics.clear();
+
+        PagedResponse<ProjectResponse> created = projectService.getProjectsCreatedBy("creator", voter, PageCursor.decode(""), PAGE_SIZE);
+
+        assertEquals(PAGE_SIZE, created.getContent().size());
+        assertLoads(1, 0);
+
+        statistics.clear();
+
+        PagedResponse<ProjectResponse> voted = projectService.getProjectsVotedBy("voter", voter, PageCursor.decode(""), PAGE_SIZE);
+
+        assertEquals(PAGE_SIZE, voted.getContent().size());
+        assertLoads(1, 0);
+    }
+
+    @Test
+    public void getProjectByIdRendersFromTemplateCache() {
+        Project project = projects.get(0);
+        projectService.getProjectById(project.getId(), voter);
+
+        statistics.clear();
+
+        ProjectResponse response = projectService.getProjectById(project.getId(), voter);
+
+        // Only the user's vote; project, tasks and creator come from the template cache
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertLoads(0, 0);
+        assertEquals(2, response.getTasks().size());
+        assertEquals(Long.valueOf(project.getTasks().get(0).getId()), response.getSelectedTasks());
+    }
+
+    @Test
+    public void getProjectByIdReflectsNewVotesAndExpiry() {
+        Project project = projects.get(1);
+        ProjectResponse before = projectService.getProjectById(project.getId(), creator);
+        assertNull(before.getSelectedTasks());
+
+        VoteRequest voteRequest = new VoteRequest();
+        voteRequest.setTaskId(project.getTasks().get(1).getId());
+        projectService.castVoteAndGetUpdatedProject(project.getId(), voteRequest, creator);
+
+        ProjectResponse after = projectService.getProjectById(project.getId(), creator);
+
+        assertEquals(Long.valueOf(before.getTotalVotes() + 1), after.getTotalVotes());
+        assertEquals(voteRequest.getTaskId(), after.getSelectedTasks());
+        assertFalse(after.getExpired());
+    }
+
+    @Test
+    public void getProjectByIdShowsAVoteCastOnAnotherNode() {
+        Project project = projects.get(2);
+        Long taskId = project.getTasks().get(1).getId();
+        // Seeds this node's filter before the vote, as if it had been cast elsewhere afterwards
+        assertFalse(voteMembershipFilter.hasVoted(project.getId(), creator.getId()));
+
+        Timestamp now = Timestamp.from(Instant.now());
+        jdbcTemplate.update("INSERT INTO votes (created_at, updated_at, project_id, task_id, user_id) VALUES (?, ?, ?, ?, ?)",
+                now, now, project.getId(), taskId, creator.getId());
+
+        assertEquals(taskId, projectService.getProjectById(project.getId(), creator).getSelectedTasks());
+    }
+
+    @Test
+    public void newProjectVersionIsHandedOutOnlyAfterCommit() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        long before = projectVersionTracker.getListingVersion();
+
+        transaction.execute(status -> {
+            projects.add(projectFixture.createProject("Committed project", 2));
+            // Not visible to readers yet, so a tag taken now must not describe it
+            assertEquals(before, projectVersionTracker.getListingVersion());
+            return null;
+        });
+        assertTrue(projectVersionTracker.getListingVersion() > before);
+
+        long committed = projectVersionTracker.getListingVersion();
+        transaction.execute(status -> {
+            projectFixture.createProject("Rolled back project", 2);
+            status.setRollbackOnly();
+            return null;
+        });
+        assertEquals(committed, projectVersionTracker.getListingVersion());
+    }
+
+    @Test
+    public void createProjectLoadsNothing() {
+        statistics.clear();
+
+        projects.add(projectFixture.createProject("Another project", 2));
+
+        assertLoads(0, 0);
+    }
+
+    @Test
+    public void castVoteOnCachedProjectIssuesNoJpaStatements() {
+        Project project = projects.get(0);
+        VoteRequest voteRequest = new VoteRequest();
+        voteRequest.setTaskId(project.getTasks().get(1).getId());
+
+        statistics.clear();
+
+        ProjectResponse response = projectService.castVoteAndGetUpdatedProject(project.getId(), voteRequest, creator);
+
+        // Validated against the template cached by the setUp votes. Statistics only see JPA statements: the writer's
+        // batch still runs one SELECT for votes already stored, then the inserts, through JdbcTemplate
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertLoads(0, 0);
+        assertEquals(Long.valueOf(2), response.getTotalVotes());
+        assertEquals(voteRequest.getTaskId(), response.getSelectedTasks());
+        assertEquals("creator", response.getCreatedBy().getUsername());
+    }
+
+    @Test
+    public void repeatVoteIsRejectedBeforeTheWriter() {
+        Project project = projects.get(0);
+        VoteRequest voteRequest = new VoteRequest();
+        voteRequest.setTaskId(project.getTasks().get(1).getId());
+        long rejections = voteMembershipFilter.getRejectionCount();
+
+        statistics.clear();
+
+        try {
+            projectService.castVoteAndGetUpdatedProject(project.getId(), voteRequest, voter);
+            fail("Repeat vote was accepted");
+        } catch (BadRequestException expected) {
+            // Only the existence check confirming the filter hit
+            assertEquals(1, statistics.getPrepareStatementCount());
+            assertLoads(0, 0);
+        }
+
+        assertEquals(rejections + 1, voteMembershipFilter.getRejectionCount());
+        assertEquals(PROJECT_COUNT, voteRepository.count());
+    }
+
+    @Test
+    public void reconcilerRepairsDriftedCounters() {
+        Long taskId = projects.get(0).getTasks().get(0).getId();
+        taskVoteCounterRepository.deleteById(taskId);
+        Long otherTaskId = projects.get(1).getTasks().get(1).getId();
+        TaskVoteCounter counter = taskVoteCounterRepository.findById(otherTaskId).get();
+        counter.setVoteCount(5);
+        taskVoteCounterRepository.save(counter);
+
+        voteCounterReconciler.reconcile();
+
+        assertEquals(1, taskVoteCounterRepository.findById(taskId).get().getVoteCount());
+        assertEquals(0, taskVoteCounterRepository.findById(otherTaskId).get().getVoteCount());
+        assertEquals(Long.valueOf(0), voteTallyEngine.getTaskVoteCounts(projects.get(1).getId()).get(otherTaskId));
+    }
+
+    @Test
+    public void reconcilerLeavesVotesOnTheirWayToTheCounterAlone() throws Exception {
+        Project project = projects.get(2);
+        Long taskId = project.getTasks().get(1).getId();
+        Timestamp now = Timestamp.from(Instant.now());
+        jdbcTemplate.update("INSERT INTO votes (created_at, updated_at, project_id, task_id, user_id) VALUES (?, ?, ?, ?, ?)",
+                now, now, project.getId(), taskId, creator.getId());
+
+        ReflectionTestUtils.setField(voteCounterReconciler, "settleMs", 500L);
+        ExecutorService otherNode = Executors.newSingleThreadExecutor();
+        try {
+            // The node that stored the vote flushes its increment while the reconciler is running
+            Future<?> flush = otherNode.submit(() -> {
+                Thread.sleep(100);
+                return taskVoteCounterRepository.addVotes(taskId, 1);
+            });
+            voteCounterReconciler.reconcile();
+            flush.get();
+        } finally {
+            otherNode.shutdown();
+            ReflectionTestUtils.setField(voteCounterReconciler, "settleMs", 0L);
+        }
+
+        assertEquals(1, taskVoteCounterRepository.findById(taskId).get().getVoteCount());
+    }
+
+    private void assertStatementCountWithinBudget() {
+        assertTrue("Statements: " + statistics.getPrepareStatementCount(),
+                statistics.getPrepareStatementCount() <= MAX_STATEMENTS_PER_PAGE);
+        assertLoads(0, 0);
+    }
+
+    // Without the read-only transaction every repository call opened its own session and connection
+    private void assertSingleReadOnlySession() {
+        assertEquals("Sessions", 1, statistics.getSessionOpenCount());
+        assertEquals("Connections", 1, statistics.getConnectCount());
+        assertEquals("Flushes", 0, statistics.getFlushCount());
+    }
+
+    private void assertLoads(long entityLoads, long collectionLoads) {
+        assertEquals("Entity loads", entityLoads, statistics.getEntityLoadCount());
+        assertEquals("Collection loads", collectionLoads, statistics.getCollectionLoadCount());
+    }
+}
@@ -0,0 +1,172 @@
+package com.ivoka.authJWT.service;
+
+import com.ivoka.authJWT.config.UserUniqueKeyMigration;
+import com.ivoka.authJWT.exception.BadRequestException;
+import com.ivoka.authJWT.model.Role;
+import com.ivoka.authJWT.model.RoleName;
+import com.ivoka.authJWT.model.User;
+import com.ivoka.authJWT.repository.RoleRepository;
+import com.ivoka.authJWT.repository.UserRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.IntFunction;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+public class UserRegistrationTests {
+
+    private static final int CONCURRENT_SIGNUPS = 16;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private RoleService roleService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private UserUniqueKeyMigration userUniqueKeyMigration;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Statistics statistics;
+
+    @Before
+    public void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        // Not findByName: the query cache is shared with the other test contexts, whose create-drop may have removed the row
+        if (roleRepository.findAll().stream().noneMatch(role -> role.getName() == RoleName.ROLE_USER)) {
+            roleRepository.save(new Role(RoleName.ROLE_USER));
+        }
+        roleService.getRole(RoleName.ROLE_USER);
+    }
+
+    @After
+    public void tearDown() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    public void signupIsOneInsertPlusTheRoleRow() {
+        statistics.clear();
+
+        User user = userService.registerUser(new User("New User", "newuser", "new@example.com", "secret"));
+
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(RoleName.ROLE_USER, user.getRoles().iterator().next().getName());
+    }
+
+    @Test
+    public void generatedUniqueKeysAreRenamedOrDropped() {
+        // An older schema: generated key names, the email one next to the named key ddl-auto = update added
+        jdbcTemplate.execute("ALTER TABLE users DROP CONSTRAINT " + User.USERNAME_CONSTRAINT);
+        jdbcTemplate.execute("ALTER TABLE users ADD CONSTRAINT UK_r43af9ap4edm43mmtq01oddj6 UNIQUE (username)");
+        jdbcTemplate.execute("ALTER TABLE users ADD CONSTRAINT UK_6dotkott2kjsp8vw4d0m25fb7 UNIQUE (email)");
+
+        userUniqueKeyMigration.migrate();
+
+        List<String> keys = jdbcTemplate.queryForList("SELECT LOWER(CONSTRAINT_NAME) FROM INFORMATION_SCHEMA.TABLE_CONSTRAINTS " +
+                "WHERE LOWER(TABLE_NAME) = 'users' AND CONSTRAINT_TYPE = 'UNIQUE' ORDER BY 1", String.class);
+        assertEquals(Arrays.asList(User.EMAIL_CONSTRAINT, User.USERNAME_CONSTRAINT), keys);
+
+        userService.registerUser(new User("First", "first", "first@example.com", "secret"));
+        assertConflict(UserService.USERNAME_TAKEN, new User("Second", "first", "second@example.com", "secret"));
+    }
+
+    @Test
+    public void duplicateSignupsAreReportedByTheConstraints() {
+        userService.registerUser(new User("First", "first", "first@example.com", "secret"));
+
+        statistics.clear();
+
+        assertConflict(UserService.USERNAME_TAKEN, new User("Second", "first", "second@example.com", "secret"));
+        assertConflict(UserService.EMAIL_TAKEN, new User("Third", "third", "first@example.com", "secret"));
+
+        // Only the two failed inserts; the conflicting field is read from the constraint name
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void concurrentSignupsForOneUsernameHaveOneWinner() throws Exception {
+        List<String> outcomes = signUpConcurrently(i -> new User("Racer " + i, "racer", "racer" + i + "@example.com", "secret"));
+
+        assertEquals(1, outcomes.stream().filter("created"::equals).count());
+        assertEquals(CONCURRENT_SIGNUPS - 1, outcomes.stream().filter(UserService.USERNAME_TAKEN::equals).count());
+        assertEquals(1, userRepository.count());
+    }
+
+    @Test
+    public void concurrentSignupsForOneEmailHaveOneWinner() throws Exception {
+        List<String> outcomes = signUpConcurrently(i -> new User("Racer " + i, "racer" + i, "racer@example.com", "secret"));
+
+        assertEquals(1, outcomes.stream().filter("created"::equals).count());
+        assertEquals(CONCURRENT_SIGNUPS - 1, outcomes.stream().filter(UserService.EMAIL_TAKEN::equals).count());
+        assertEquals(1, userRepository.count());
+    }
+
+    private void assertConflict(String expectedMessage, User user) {
+        try {
+            userService.registerUser(user);
+            throw new AssertionError("Duplicate signup was accepted");
+        } catch (BadRequestException ex) {
+            assertEquals(expectedMessage, ex.getMessage());
+        }
+    }
+
+    private List<String> signUpConcurrently(IntFunction<User> users) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CONCURRENT_SIGNUPS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < CONCURRENT_SIGNUPS; i++) {
+                User user = users.apply(i);
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        userService.registerUser(user);
+                        return "created";
+                    } catch (BadRequestException ex) {
+                        return ex.getMessage();
+                    }
+                }));
+            }
+            start.countDown();
+
+            List<String> outcomes = new ArrayList<>();
+            for (Future<String> future : futures) {
+                outcomes.add(future.get(30, TimeUnit.SECONDS));
+            }
+            return outcomes;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
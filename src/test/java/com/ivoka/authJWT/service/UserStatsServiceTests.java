@@ -0,0 +1,145 @@
+package com.ivoka.authJWT.service;
+
+import com.ivoka.authJWT.model.Project;
+import com.ivoka.authJWT.payload.UserProfile;
+import com.ivoka.authJWT.payload.VoteRequest;
+import com.ivoka.authJWT.repository.UserStatsRepository;
+import com.ivoka.authJWT.security.UserPrincipal;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Instant;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+public class UserStatsServiceTests {
+
+    private static final int PROJECT_COUNT = 3;
+
+    @Autowired
+    private UserStatsService userStatsService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ProjectService projectService;
+
+    @Autowired
+    private ProjectFixture projectFixture;
+
+    @Autowired
+    private UserStatsRepository userStatsRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Statistics statistics;
+
+    private UserPrincipal creator;
+
+    private UserPrincipal voter;
+
+    @Before
+    public void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        creator = projectFixture.createUser("Project Creator", "creator");
+        voter = projectFixture.createUser("Project Voter", "voter");
+
+        projectFixture.authenticate(creator);
+
+        for (int i = 0; i < PROJECT_COUNT; i++) {
+            Project project = projectFixture.createProject("Project " + i, 2);
+            VoteRequest voteRequest = new VoteRequest();
+            voteRequest.setTaskId(project.getTasks().get(0).getId());
+            projectService.castVoteAndGetUpdatedProject(project.getId(), voteRequest, voter);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        projectFixture.deleteAll();
+    }
+
+    @Test
+    public void userProfileIsOneStatementOverTheStatsTable() {
+        statistics.clear();
+
+        UserProfile creatorProfile = userService.getUserProfile("creator");
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(Long.valueOf(PROJECT_COUNT), creatorProfile.getProjectCount());
+        assertEquals(Long.valueOf(0), creatorProfile.getVoteCount());
+
+        UserProfile voterProfile = userService.getUserProfile("voter");
+        assertEquals(Long.valueOf(0), voterProfile.getProjectCount());
+        assertEquals(Long.valueOf(PROJECT_COUNT), voterProfile.getVoteCount());
+        assertTrue(voterProfile.getLastActivityAt().isAfter(voterProfile.getJoinedAt()));
+    }
+
+    @Test
+    public void projectCountRollsBackWithTheProject() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.execute(status -> {
+            projectService.createProject(ProjectFixture.projectRequest("Rolled back", 2));
+            status.setRollbackOnly();
+            return null;
+        });
+
+        assertEquals(Long.valueOf(PROJECT_COUNT), userService.getUserProfile("creator").getProjectCount());
+    }
+
+    @Test
+    public void rebuildBackfillsUserStats() {
+        userStatsRepository.deleteAll();
+        assertEquals(Long.valueOf(0), userService.getUserProfile("voter").getVoteCount());
+
+        userStatsService.rebuild();
+
+        assertEquals(Long.valueOf(PROJECT_COUNT), userService.getUserProfile("creator").getProjectCount());
+        assertEquals(Long.valueOf(PROJECT_COUNT), userService.getUserProfile("voter").getVoteCount());
+    }
+
+    @Test
+    public void rebuildCorrectsDriftedRows() {
+        jdbcTemplate.update("UPDATE user_stats SET vote_count = 99 WHERE user_id = ?", voter.getId());
+        jdbcTemplate.update("UPDATE user_stats SET project_count = 0 WHERE user_id = ?", creator.getId());
+
+        userStatsService.rebuild();
+
+        assertEquals(Long.valueOf(PROJECT_COUNT), userService.getUserProfile("voter").getVoteCount());
+        assertEquals(Long.valueOf(PROJECT_COUNT), userService.getUserProfile("creator").getProjectCount());
+    }
+
+    @Test
+    public void votesOfOneUserInABatchAreAddedToOneStatsRow() {
+        userStatsService.recordVotes(Arrays.asList(voter.getId(), creator.getId(), voter.getId()), Instant.now());
+
+        assertEquals(Long.valueOf(PROJECT_COUNT + 2), userService.getUserProfile("voter").getVoteCount());
+        assertEquals(Long.valueOf(1), userService.getUserProfile("creator").getVoteCount());
+    }
+}
@@ -0,0 +1,134 @@
+package com.ivoka.authJWT.service;
+
+import com.ivoka.authJWT.exception.ServiceUnavailableException;
+import com.ivoka.authJWT.model.Project;
+import com.ivoka.authJWT.payload.VoteRequest;
+import com.ivoka.authJWT.repository.VoteRepository;
+import com.ivoka.authJWT.security.UserPrincipal;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+public class VoteBatchWriterTests {
+
+    @Autowired
+    private VoteBatchWriter voteBatchWriter;
+
+    @Autowired
+    private ProjectService projectService;
+
+    @Autowired
+    private ProjectFixture projectFixture;
+
+    @Autowired
+    private VoteRepository voteRepository;
+
+    private UserPrincipal voter;
+
+    private Project project;
+
+    @Before
+    public void setUp() {
+        projectFixture.authenticate(projectFixture.createUser("Project Creator", "creator"));
+        project = projectFixture.createProject("Batched", 2);
+        voter = projectFixture.createUser("Project Voter", "voter");
+    }
+
+    @After
+    public void tearDown() {
+        projectFixture.deleteAll();
+    }
+
+    @Test
+    public void repeatVoteInTheSameBatchIsNotStored() throws Exception {
+        // Both land in one batch, within app.voteBatchMaxDelayMs of each other
+        CompletableFuture<Boolean> first = voteBatchWriter.submit(project.getId(), project.getTasks().get(0).getId(), voter.getId());
+        CompletableFuture<Boolean> second = voteBatchWriter.submit(project.getId(), project.getTasks().get(1).getId(), voter.getId());
+
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        assertFalse(second.get(5, TimeUnit.SECONDS));
+        assertFalse(voteBatchWriter.submit(project.getId(), project.getTasks().get(1).getId(), voter.getId())
+                .get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void voteNotConfirmedInTimeAnswers503() throws InterruptedException {
+        long voteTimeoutMs = (long) ReflectionTestUtils.getField(projectService, "voteTimeoutMs");
+        ReflectionTestUtils.setField(projectService, "voteTimeoutMs", 0L);
+        try {
+            VoteRequest voteRequest = new VoteRequest();
+            voteRequest.setTaskId(project.getTasks().get(0).getId());
+            projectService.castVoteAndGetUpdatedProject(project.getId(), voteRequest, voter);
+            fail("Expected the vote to time out");
+        } catch (ServiceUnavailableException expected) {
+            // answered with a 503
+        } finally {
+            ReflectionTestUtils.setField(projectService, "voteTimeoutMs", voteTimeoutMs);
+        }
+
+        // The writer still stores the vote afterwards
+        long deadline = System.currentTimeMillis() + 5000;
+        while (voteRepository.count() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(1, voteRepository.count());
+    }
+
+    @Test
+    public void writerStoppedByAnErrorRejectsVotes() throws Exception {
+        VoteBatchWriter failingWriter = new VoteBatchWriter();
+        ReflectionTestUtils.setField(failingWriter, "batchSize", 10);
+        ReflectionTestUtils.setField(failingWriter, "maxDelayMs", 5L);
+        ReflectionTestUtils.setField(failingWriter, "queueCapacity", 10);
+        ReflectionTestUtils.setField(failingWriter, "transactionManager", new PlatformTransactionManager() {
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                throw new OutOfMemoryError("simulated");
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {
+            }
+
+            @Override
+            public void rollback(TransactionStatus status) {
+            }
+        });
+        failingWriter.init();
+
+        try {
+            failingWriter.submit(project.getId(), project.getTasks().get(0).getId(), voter.getId()).get(5, TimeUnit.SECONDS);
+            fail("Expected the vote to fail");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof ServiceUnavailableException);
+        }
+
+        Thread writerThread = (Thread) ReflectionTestUtils.getField(failingWriter, "writerThread");
+        writerThread.join(5000);
+
+        try {
+            failingWriter.submit(project.getId(), project.getTasks().get(0).getId(), voter.getId());
+            fail("Expected the stopped writer to reject the vote");
+        } catch (ServiceUnavailableException expected) {
+            // answered with a 503
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.ivoka.authJWT.service;
+
+import com.ivoka.authJWT.payload.VoteCountUpdate;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.ClassUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Thousands of in-process subscribers; each emitter is connected to a fake client in place of the servlet response
+public class VoteStreamServiceTests {
+
+    private static final Long PROJECT_ID = 1L;
+    private static final Long TASK_ID = 10L;
+    private static final int BUFFER_SIZE = 4;
+    private static final int SENDER_THREADS = 4;
+    private static final long WAIT_SECONDS = 30;
+
+    // Package-private in Spring; the servlet response normally implements it
+    private static final Class<?> EMITTER_HANDLER = ClassUtils.resolveClassName(
+            "org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter$Handler", null);
+
+    private VoteStreamService voteStreamService;
+
+    private final AtomicLong votes = new AtomicLong();
+
+    private final CountDownLatch unblock = new CountDownLatch(1);
+
+    private static final class Client {
+        private final AtomicInteger updates = new AtomicInteger();
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private volatile boolean failing;
+        private volatile boolean blocking;
+    }
+
+    @Before
+    public void setUp() {
+        VoteTallyEngine voteTallyEngine = mock(VoteTallyEngine.class);
+        when(voteTallyEngine.getTaskVoteCounts(anyLong())).thenAnswer(invocation -> Collections.singletonMap(TASK_ID, votes.get()));
+
+        voteStreamService = new VoteStreamService();
+        ReflectionTestUtils.setField(voteStreamService, "voteTallyEngine", voteTallyEngine);
+        ReflectionTestUtils.setField(voteStreamService, "maxSubscribers", 10000);
+        ReflectionTestUtils.setField(voteStreamService, "bufferSize", BUFFER_SIZE);
+        ReflectionTestUtils.setField(voteStreamService, "timeoutMs", 60000L);
+        ReflectionTestUtils.setField(voteStreamService, "senderThreads", SENDER_THREADS);
+        voteStreamService.init();
+    }
+
+    @After
+    public void tearDown() {
+        unblock.countDown();
+        voteStreamService.shutdown();
+    }
+
+    @Test
+    public void everySubscriberReceivesTheBroadcast() throws Exception {
+        List<Client> clients = subscribe(5000);
+        awaitUpdates(clients, 1);
+
+        castVoteAndBroadcast();
+
+        awaitUpdates(clients, 2);
+        assertEquals(clients.size(), voteStreamService.getSubscriberCount());
+    }
+
+    @Test
+    public void slowAndFailedSubscribersAreDroppedWithoutHoldingBackTheOthers() throws Exception {
+        List<Client> healthy = subscribe(3000);
+        // One stuck client per sender thread but one, so only a single sender is left for everybody else
+        List<Client> stuck = subscribe(SENDER_THREADS - 1);
+        List<Client> failed = subscribe(100);
+        awaitUpdates(healthy, 1);
+        awaitUpdates(stuck, 1);
+        awaitUpdates(failed, 1);
+        stuck.forEach(client -> client.blocking = true);
+        failed.forEach(client -> client.failing = true);
+
+        // Enough rounds to overflow the stuck clients' buffers; the broadcaster must never wait on them
+        int rounds = BUFFER_SIZE + 2;
+        ExecutorService broadcaster = Executors.newSingleThreadExecutor();
+        try {
+            broadcaster.submit(() -> {
+                for (int i = 0; i < rounds; i++) {
+                    castVoteAndBroadcast();
+                    // Let the healthy clients keep up, the point is the stuck ones falling behind
+                    awaitUpdatesUnchecked(healthy, 2 + i);
+                }
+            }).get(WAIT_SECONDS, TimeUnit.SECONDS);
+        } finally {
+            broadcaster.shutdownNow();
+        }
+
+        await(() -> voteStreamService.getSubscriberCount() == healthy.size(), "slow and failed subscribers dropped");
+
+        unblock.countDown();
+        await(() -> stuck.stream().allMatch(client -> client.completed.get()), "stuck subscribers completed");
+        assertTrue(healthy.stream().noneMatch(client -> client.completed.get()));
+    }
+
+    private void castVoteAndBroadcast() {
+        votes.incrementAndGet();
+        voteStreamService.onVoteCast(new VoteCastEvent(PROJECT_ID, TASK_ID));
+        voteStreamService.broadcast();
+    }
+
+    private List<Client> subscribe(int count) {
+        List<Client> clients = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Client client = new Client();
+            connect(voteStreamService.subscribe(PROJECT_ID), client);
+            clients.add(client);
+        }
+        return clients;
+    }
+
+    private void connect(SseEmitter emitter, Client client) {
+        Object handler = Proxy.newProxyInstance(EMITTER_HANDLER.getClassLoader(), new Class<?>[]{EMITTER_HANDLER},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "send":
+                            if (client.failing) {
+                                throw new IOException("Broken pipe");
+                            }
+                            if (client.blocking) {
+                                unblock.await();
+                            }
+                            if (args[0] instanceof VoteCountUpdate) {
+                                client.updates.incrementAndGet();
+                            }
+                            return null;
+                        case "complete":
+                        case "completeWithError":
+                            client.completed.set(true);
+                            return null;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return null;
+                    }
+                });
+        ReflectionTestUtils.invokeMethod(emitter, "initialize", handler);
+    }
+
+    private void awaitUpdates(List<Client> clients, int updates) throws InterruptedException {
+        await(() -> clients.stream().allMatch(client -> client.updates.get() >= updates), updates + " updates each");
+    }
+
+    private void awaitUpdatesUnchecked(List<Client> clients, int updates) {
+        try {
+            awaitUpdates(clients, updates);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(BooleanSupplier condition, String description) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(WAIT_SECONDS);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Timed out waiting for " + description);
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.ivoka.authJWT.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.ivoka.authJWT.exception.BadRequestException;
+import com.ivoka.authJWT.model.Project;
+import com.ivoka.authJWT.model.TaskVoteCount;
+import com.ivoka.authJWT.payload.VoteRequest;
+import com.ivoka.authJWT.repository.TaskVoteCounterRepository;
+import com.ivoka.authJWT.repository.VoteRepository;
+import com.ivoka.authJWT.security.UserPrincipal;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+public class VoteTallyEngineTests {
+
+    private static final int VOTER_COUNT = 40;
+    private static final int TASK_COUNT = 3;
+
+    @Autowired
+    private ProjectService projectService;
+
+    @Autowired
+    private VoteTallyEngine voteTallyEngine;
+
+    @Autowired
+    private ProjectFixture projectFixture;
+
+    @Autowired
+    private VoteRepository voteRepository;
+
+    @Autowired
+    private TaskVoteCounterRepository taskVoteCounterRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Project project;
+
+    private List<UserPrincipal> voters = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        projectFixture.authenticate(projectFixture.createUser("Project Creator", "creator"));
+        project = projectFixture.createProject("Concurrent", TASK_COUNT);
+
+        for (int i = 0; i < VOTER_COUNT; i++) {
+            voters.add(projectFixture.createUser("Voter " + i, "voter" + i));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        projectFixture.deleteAll();
+    }
+
+    @Test
+    public void concurrentVotesMatchDatabaseCounts() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        AtomicInteger rejected = new AtomicInteger();
+        List<Callable<Void>> votes = new ArrayList<>();
+
+        // Every voter votes twice so duplicate votes race with the first ones and must not be counted
+        for (int attempt = 0; attempt < 2; attempt++) {
+            for (int i = 0; i < VOTER_COUNT; i++) {
+                UserPrincipal voter = voters.get(i);
+                VoteRequest voteRequest = new VoteRequest();
+                voteRequest.setTaskId(project.getTasks().get(i % TASK_COUNT).getId());
+                votes.add(() -> {
+                    try {
+                        projectService.castVoteAndGetUpdatedProject(project.getId(), voteRequest, voter);
+                    } catch (BadRequestException ex) {
+                        rejected.incrementAndGet();
+                    }
+                    return null;
+                });
+            }
+        }
+        Collections.shuffle(votes, new Random(42));
+
+        try {
+            for (Future<Void> future : executor.invokeAll(votes)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(VOTER_COUNT, rejected.get());
+
+        Map<Long, Long> expected = voteRepository.countByProjectIdGroupByTaskId(project.getId()).stream()
+                .collect(Collectors.toMap(TaskVoteCount::getTaskId, TaskVoteCount::getVoteCount));
+        assertEquals(expected, voteTallyEngine.getTaskVoteCounts(project.getId()));
+
+        voteTallyEngine.flush();
+
+        project.getTasks().forEach(task -> assertEquals(expected.getOrDefault(task.getId(), 0L).longValue(),
+                taskVoteCounterRepository.findById(task.getId()).get().getVoteCount()));
+    }
+
+    @Test
+    public void countsPersistedByAnotherNodeAreReadOnRefresh() {
+        Long taskId = project.getTasks().get(0).getId();
+
+        voteTallyEngine.recordVote(project.getId(), taskId);
+        // Another node flushes its own increments straight to the counter
+        taskVoteCounterRepository.addVotes(taskId, 5);
+        assertEquals(Long.valueOf(1), voteTallyEngine.getTaskVoteCounts(project.getId()).get(taskId));
+
+        long refreshIntervalNanos = (long) ReflectionTestUtils.getField(voteTallyEngine, "refreshIntervalNanos");
+        ReflectionTestUtils.setField(voteTallyEngine, "refreshIntervalNanos", 0L);
+        try {
+            // The local vote is not flushed yet and stays on top of the stored count
+            assertEquals(Long.valueOf(6), voteTallyEngine.getTaskVoteCounts(project.getId()).get(taskId));
+        } finally {
+            ReflectionTestUtils.setField(voteTallyEngine, "refreshIntervalNanos", refreshIntervalNanos);
+        }
+
+        voteTallyEngine.flush();
+        assertEquals(6, taskVoteCounterRepository.findById(taskId).get().getVoteCount());
+    }
+
+    @Test
+    public void seedJoinsTheCallersPrimaryTransaction() {
+        Long taskId = project.getTasks().get(0).getId();
+
+        long refreshIntervalNanos = (long) ReflectionTestUtils.getField(voteTallyEngine, "refreshIntervalNanos");
+        ReflectionTestUtils.setField(voteTallyEngine, "refreshIntervalNanos", 0L);
+        try {
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            transaction.execute(status -> {
+                // Uncommitted, so only a read on the caller's own connection can see it
+                jdbcTemplate.update("UPDATE task_vote_counters SET vote_count = 5 WHERE task_id = ?", taskId);
+                assertEquals(Long.valueOf(5), voteTallyEngine.getTaskVoteCounts(project.getId()).get(taskId));
+                status.setRollbackOnly();
+                return null;
+            });
+
+            assertEquals(Long.valueOf(0), voteTallyEngine.getTaskVoteCounts(project.getId()).get(taskId));
+        } finally {
+            ReflectionTestUtils.setField(voteTallyEngine, "refreshIntervalNanos", refreshIntervalNanos);
+        }
+    }
+
+    @Test
+    public void evictedProjectsPersistTheirPendingVotes() throws InterruptedException {
+        Long taskId = project.getTasks().get(0).getId();
+        voteTallyEngine.recordVote(project.getId(), taskId);
+
+        Cache<?, ?> projects = (Cache<?, ?>) ReflectionTestUtils.getField(voteTallyEngine, "projects");
+        Policy.Eviction<?, ?> eviction = projects.policy().eviction().get();
+        long maximum = eviction.getMaximum();
+        try {
+            eviction.setMaximum(0);
+            projects.cleanUp();
+
+            // The removal listener runs asynchronously
+            long deadline = System.currentTimeMillis() + 5000;
+            while (taskVoteCounterRepository.findById(taskId).get().getVoteCount() == 0
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+        } finally {
+            eviction.setMaximum(maximum);
+        }
+
+        assertEquals(1, taskVoteCounterRepository.findById(taskId).get().getVoteCount());
+        assertEquals(Long.valueOf(1), voteTallyEngine.getTaskVoteCounts(project.getId()).get(taskId));
+    }
+}